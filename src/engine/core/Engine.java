@@ -28,16 +28,18 @@ public abstract class Engine implements Runnable {
     protected Screen screen;
     protected Input input;
     protected Renderer renderer;
+    protected WorkerPool workers; // Render threads, shared for the whole lifetime of the engine
     protected Robot robot; // Used for mouse locking (centering mouse)
     
     // Loop State
     protected boolean running = false;
     
     // Configuration
-    protected double renderScale = 0.5;
+    protected volatile double renderScale = 0.5;
     private final double TICKS_PER_SECOND = 60.0;
     
     private int currentWidth, currentHeight;
+    private volatile boolean resizePending = false;
 
     /**
      * Configures the engine and initializes subsystems.
@@ -59,7 +61,8 @@ public abstract class Engine implements Runnable {
         // Screen is the pixel buffer. It can be smaller than the window for performance/retro-style.
         this.screen = new Screen((int)(width * renderScale), (int)(height * renderScale));
         this.input = new Input();
-        this.renderer = new Renderer(screen);
+        this.workers = new WorkerPool();
+        this.renderer = new Renderer(screen, workers);
         
         window.addInputListener(input);
         
@@ -160,12 +163,13 @@ public abstract class Engine implements Runnable {
     }
     
     /**
-     * Handles window resizing. 
-     * If the window size changes, we must recreate the 'Screen' buffer 
+     * Handles window resizing.
+     * If the window size (or the render scale) changes, the 'Screen' buffer is resized in place
      * to match the new aspect ratio and size (scaled by renderScale).
      */
     private void handleResize() {
-        if (window.getWidth() != currentWidth || window.getHeight() != currentHeight) {
+        if (resizePending || window.getWidth() != currentWidth || window.getHeight() != currentHeight) {
+            resizePending = false;
             currentWidth = window.getWidth();
             currentHeight = window.getHeight();
             if (currentWidth > 0 && currentHeight > 0) {
@@ -173,14 +177,29 @@ public abstract class Engine implements Runnable {
                 int scaledHeight = (int)(currentHeight * renderScale);
                 if (scaledWidth < 1) scaledWidth = 1;
                 if (scaledHeight < 1) scaledHeight = 1;
-                
-                // Re-init screen and renderer
-                screen = new Screen(scaledWidth, scaledHeight);
-                renderer = new Renderer(screen); // This will reset projection matrix
+
+                // Resize screen and renderer in place (buffers and worker threads are reused)
+                renderer.resize(scaledWidth, scaledHeight);
             }
         }
     }
-    
+
+    /**
+     * Changes the internal resolution scale at runtime (e.g. 0.5 renders at half the window size).
+     * The screen is resized before the next frame.
+     */
+    public void setRenderScale(double renderScale) {
+        if (renderScale <= 0) {
+            throw new IllegalArgumentException("Render scale must be positive: " + renderScale);
+        }
+        this.renderScale = renderScale;
+        resizePending = true;
+    }
+
+    public double getRenderScale() {
+        return renderScale;
+    }
+
     /**
      * Default Input handling (e.g. Escape to quit).
      */
@@ -0,0 +1,503 @@
+package engine.core;
+
+import engine.graphics.ProjectedTriangle;
+import engine.math.IndexedMesh;
+import engine.math.Mesh;
+import engine.math.Triangle;
+import engine.math.Vector3D;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Geometry Stage of the pipeline, run by one worker thread.
+ * <p>
+ * Transforms, Clips, Culls, Lights and Projects meshes into its OWN render queue.
+ * Every worker owns its scratch objects and output queue, so several meshes can be
+ * processed in parallel without any locking. The {@link Renderer} merges the queues afterwards.
+ * </p>
+ */
+public class GeometryWorker {
+
+    // --- CACHE (Object Pool) ---
+    // Reusable objects to prevent Garbage Collection spikes.
+    private final Triangle triTranslated = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
+    private final Triangle triRotatedYaw = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
+    private final Triangle triView = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
+
+    // Helper vectors for math
+    private final Vector3D vNormal = new Vector3D(0,0,0);
+    private final Vector3D vRotatedYaw = new Vector3D(0,0,0);
+    private final Vector3D vRotatedNormal = new Vector3D(0,0,0);
+    private final Vector3D vVertex = new Vector3D(0,0,0);
+
+    // --- CLIP SPACE ---
+    // Outcode bits of a clip-space vertex (x, y, z, w). The visible volume is 0 <= z <= w, -w <= x, y <= w.
+    // Clipping happens against the near and far planes and the Guard Band (|x|, |y| <= guardBand * w):
+    // triangles only poking out of the viewport are left to the rasterizer, which clamps them per tile anyway.
+    private static final int CLIP_NEAR = 1;
+    private static final int CLIP_FAR = 2;
+    private static final int CLIP_LEFT = 4;     // Guard Band planes
+    private static final int CLIP_RIGHT = 8;
+    private static final int CLIP_BOTTOM = 16;
+    private static final int CLIP_TOP = 32;
+    private static final int CLIP_PLANES = 6;
+    private static final int CLIP_MASK = (1 << CLIP_PLANES) - 1;
+    private static final int OUT_LEFT = 64;     // Viewport planes (only used to reject triangles)
+    private static final int OUT_RIGHT = 128;
+    private static final int OUT_BOTTOM = 256;
+    private static final int OUT_TOP = 512;
+    private static final int REJECT_MASK = CLIP_NEAR | CLIP_FAR | OUT_LEFT | OUT_RIGHT | OUT_BOTTOM | OUT_TOP;
+
+    // Clipping Pool: polygons of clip-space vertices (x, y, z, w, lighting).
+    // Every plane adds at most one vertex, so a clipped triangle has at most 3 + 6 vertices.
+    private static final int POLYGON_STRIDE = 5;
+    private static final int MAX_POLYGON = 3 + CLIP_PLANES;
+    private double[] polygon = new double[MAX_POLYGON * POLYGON_STRIDE];
+    private double[] polygonScratch = new double[MAX_POLYGON * POLYGON_STRIDE];
+    private final int[] polygonScreen = new int[2 * MAX_POLYGON]; // Projected polygon, see queuePolygon()
+    private final double[] polygonDepth = new double[MAX_POLYGON];
+
+    // --- CURRENT FRAME (shared, read-only; set by processMesh) ---
+    private RenderContext context;
+
+    // --- POST-TRANSFORM VERTEX CACHE (Indexed Meshes) ---
+    // Every vertex of the current indexed mesh is transformed, lit and projected once into these arrays
+    // (grown as needed, never shrunk). Triangles then just look their vertices up by index.
+    private double[] cacheView = new double[0];     // View-space x, y, z (3 per vertex)
+    private double[] cacheClip = new double[0];     // Clip-space x, y, z, w (4 per vertex)
+    private int[] cacheCode = new int[0];           // Outcode (CLIP_* / OUT_* bits)
+    private int[] cacheScreen = new int[0];         // Screen x, y in 28.4 Fixed Point (2 per vertex), if inside the Guard Band
+    private double[] cacheDepth = new double[0];    // Projected z
+    private double[] cacheLight = new double[0];    // Gouraud lighting intensity
+
+    // --- RENDER QUEUE (Per Worker) ---
+    // We reuse these objects to strictly avoid Garbage Collection.
+    private final List<ProjectedTriangle> renderBuffer = new ArrayList<>();
+    private int bufferCount = 0;
+
+    // --- STATISTICS ---
+    // How many projected triangles took each raster path since the last reset()
+    private int culledCount = 0;  // Cover no pixel, dropped before the render queue
+    private int smallCount = 0;   // Small-triangle path (bounding box of at most 2x2 pixels)
+
+    /**
+     * @param initialCapacity Number of triangles to pre-allocate (reduces initial allocation stutter).
+     */
+    public GeometryWorker(int initialCapacity) {
+        for (int i = 0; i < initialCapacity; i++) {
+            renderBuffer.add(new ProjectedTriangle());
+        }
+    }
+
+    /** Logically clears the render queue without deleting the pooled objects. */
+    public void reset() {
+        bufferCount = 0;
+        culledCount = 0;
+        smallCount = 0;
+    }
+
+    /** Number of triangles currently in this worker's queue. */
+    public int size() {
+        return bufferCount;
+    }
+
+    public ProjectedTriangle get(int index) {
+        return renderBuffer.get(index);
+    }
+
+    /** Number of triangles dropped since the last reset() because they cover no pixel. */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /** Number of queued triangles that take the small-triangle path. */
+    public int getSmallCount() {
+        return smallCount;
+    }
+
+    /**
+     * Processes a mesh: Transforms, Clips, Lights, Projects, and appends it to this worker's queue.
+     */
+    public void processMesh(Mesh mesh, RenderContext context) {
+        if (!beginMesh(mesh.center, mesh.radius, context)) {
+            return; // Skip this mesh entirely
+        }
+
+        for (Triangle tri : mesh.triangles) {
+            // 1-2. TRANSLATION & ROTATION (View Space)
+            for (int i = 0; i < 3; i++) {
+                transformVertex(i, tri.v[i].x, tri.v[i].y, tri.v[i].z);
+                triView.n[i].set(tri.n[i]);
+            }
+            triView.color = tri.color;
+
+            processTriangle();
+        }
+    }
+
+    /**
+     * Processes an indexed mesh: Transforms, Clips, Lights, Projects, and appends it to this worker's queue.
+     * <p>
+     * A vertex is shared by up to six triangles (terrain grid), so the work is split in two stages:
+     * </p>
+     * <ul>
+     *     <li><b>Vertex Stage:</b> every vertex is transformed, lit and projected exactly once into the vertex cache.</li>
+     *     <li><b>Assembly:</b> triangles look their vertices up by index, then are rejected, backface culled and queued.
+     *     Only triangles crossing the near/far plane or the Guard Band take the general path (Clip in Clip Space,
+     *     then Project the new vertices).</li>
+     * </ul>
+     */
+    public void processMesh(IndexedMesh mesh, RenderContext context) {
+        if (!beginMesh(mesh.center, mesh.radius, context)) {
+            return; // Skip this mesh entirely
+        }
+
+        final double[] positions = mesh.positions;
+        final float[] normals = mesh.normals;
+        final int[] indices = mesh.indices;
+        final int[] colors = mesh.colors;
+
+        // --- VERTEX STAGE ---
+        int vertexCount = mesh.vertexCount;
+        if (cacheDepth.length < vertexCount) {
+            int newSize = Math.max(vertexCount, cacheDepth.length * 2);
+            cacheView = new double[3 * newSize];
+            cacheClip = new double[4 * newSize];
+            cacheCode = new int[newSize];
+            cacheScreen = new int[2 * newSize];
+            cacheDepth = new double[newSize];
+            cacheLight = new double[newSize];
+        }
+
+        for (int v = 0; v < vertexCount; v++) {
+            // 1-2. TRANSLATION & ROTATION (View Space)
+            transformVertex(0, positions[3 * v], positions[3 * v + 1], positions[3 * v + 2]);
+            Vector3D view = triView.v[0];
+            cacheView[3 * v] = view.x;
+            cacheView[3 * v + 1] = view.y;
+            cacheView[3 * v + 2] = view.z;
+
+            // 5. LIGHTING
+            vVertex.set(normals[3 * v], normals[3 * v + 1], normals[3 * v + 2]);
+            cacheLight[v] = computeLighting(vVertex);
+
+            // 6. PROJECT (Clip Space). Vertices outside the Guard Band are never projected to the screen:
+            // their triangles are clipped first.
+            toClipSpace(view, cacheClip, 4 * v);
+            int code = outcode(cacheClip, 4 * v);
+            cacheCode[v] = code;
+            if ((code & CLIP_MASK) != 0) continue;
+            toScreen(cacheClip, 4 * v, cacheScreen, 2 * v, cacheDepth, v);
+        }
+
+        // --- ASSEMBLY ---
+        for (int t = 0; t < mesh.triangleCount; t++) {
+            int a = indices[3 * t], b = indices[3 * t + 1], c = indices[3 * t + 2];
+
+            // 3. CLIP (Trivial Reject): all three vertices outside the same plane of the view volume
+            int codeA = cacheCode[a], codeB = cacheCode[b], codeC = cacheCode[c];
+            if ((codeA & codeB & codeC & REJECT_MASK) != 0) continue;
+
+            // 4. CULL (Backface Culling)
+            if (!isFrontFacing(cacheView, 3 * a, 3 * b, 3 * c)) continue;
+
+            // 3. CLIP: triangles crossing the near/far plane or the Guard Band take the general path
+            int clipPlanes = (codeA | codeB | codeC) & CLIP_MASK;
+            if (clipPlanes != 0) {
+                loadPolygonVertex(0, cacheClip, 4 * a, cacheLight[a]);
+                loadPolygonVertex(1, cacheClip, 4 * b, cacheLight[b]);
+                loadPolygonVertex(2, cacheClip, 4 * c, cacheLight[c]);
+                double avgBrightness = (cacheLight[a] + cacheLight[b] + cacheLight[c]) / 3.0;
+                queuePolygon(clipPolygon(3, clipPlanes), colors[t], avgBrightness);
+                continue;
+            }
+
+            // 7. BUFFER: everything else comes straight from the vertex cache
+            ProjectedTriangle pt = nextQueueSlot();
+            pt.x1 = cacheScreen[2 * a]; pt.y1 = cacheScreen[2 * a + 1]; pt.z1 = cacheDepth[a]; pt.l1 = cacheLight[a];
+            pt.x2 = cacheScreen[2 * b]; pt.y2 = cacheScreen[2 * b + 1]; pt.z2 = cacheDepth[b]; pt.l2 = cacheLight[b];
+            pt.x3 = cacheScreen[2 * c]; pt.y3 = cacheScreen[2 * c + 1]; pt.z3 = cacheDepth[c]; pt.l3 = cacheLight[c];
+            finishTriangle(pt, colors[t], (pt.l1 + pt.l2 + pt.l3) / 3.0);
+        }
+    }
+
+    /**
+     * Per-mesh setup shared by both mesh types: Frustum Culling against the frame's context.
+     * The matrices, frustum planes and light direction are computed once per frame (see {@link RenderContext}).
+     *
+     * @return False if the mesh's bounding sphere is completely outside the frustum.
+     */
+    private boolean beginMesh(Vector3D center, double radius, RenderContext context) {
+        this.context = context;
+
+        // --- 0. FRUSTUM CULLING ---
+        // Check if the mesh is completely outside the visible frustum
+        return !context.isSphereOutside(center, radius);
+    }
+
+    /**
+     * Moves a world-space vertex into view space (relative to the camera, then rotated) and stores it in triView.v[i].
+     */
+    private void transformVertex(int i, double x, double y, double z) {
+        // Move vertex relative to camera
+        triTranslated.v[i].set(x, y, z);
+        triTranslated.v[i].subtractInPlace(context.cameraPosition);
+
+        // Apply Camera Rotations
+        context.rotationY.multiplyVector(triTranslated.v[i], triRotatedYaw.v[i]);
+        context.rotationX.multiplyVector(triRotatedYaw.v[i], triView.v[i]);
+    }
+
+    /**
+     * Runs the rest of the pipeline on the view-space triangle in 'triView' (positions, world-space normals, color).
+     */
+    private void processTriangle() {
+        // 4. CULL (Backface Culling)
+        // Done before clipping: the clipped pieces lie in the same plane, so they face the same way.
+        for (int i = 0; i < 3; i++) {
+            Vector3D v = triView.v[i];
+            polygon[i * POLYGON_STRIDE] = v.x;
+            polygon[i * POLYGON_STRIDE + 1] = v.y;
+            polygon[i * POLYGON_STRIDE + 2] = v.z;
+        }
+        if (!isFrontFacing(polygon, 0, POLYGON_STRIDE, 2 * POLYGON_STRIDE)) return;
+
+        // 5. LIGHTING (Gouraud Shading) and 6. PROJECT (Clip Space)
+        int orCode = 0, andCode = ~0;
+        for (int i = 0; i < 3; i++) {
+            int o = i * POLYGON_STRIDE;
+            toClipSpace(triView.v[i], polygon, o);
+            polygon[o + 4] = computeLighting(triView.n[i]);
+
+            int code = outcode(polygon, o);
+            orCode |= code;
+            andCode &= code;
+        }
+
+        // 3. CLIP (near/far plane and Guard Band), then 7. BUFFER
+        if ((andCode & REJECT_MASK) != 0) return; // Trivial Reject
+        double avgBrightness = (polygon[4] + polygon[POLYGON_STRIDE + 4] + polygon[2 * POLYGON_STRIDE + 4]) / 3.0;
+        int count = 3;
+        if ((orCode & CLIP_MASK) != 0) count = clipPolygon(count, orCode & CLIP_MASK);
+        queuePolygon(count, triView.color, avgBrightness);
+    }
+
+    /**
+     * Backface test on three view-space points stored as x, y, z at the given offsets.
+     * The camera sits at the origin, so the ray from the camera to the triangle is simply its first vertex.
+     */
+    private boolean isFrontFacing(double[] p, int a, int b, int c) {
+        double ax = p[a], ay = p[a + 1], az = p[a + 2];
+
+        // Calculate Normal: (v1-v0) x (v2-v0)
+        double l1x = p[b] - ax, l1y = p[b + 1] - ay, l1z = p[b + 2] - az;
+        double l2x = p[c] - ax, l2y = p[c + 1] - ay, l2z = p[c + 2] - az;
+        vNormal.set(
+            l1y * l2z - l1z * l2y,
+            l1z * l2x - l1x * l2z,
+            l1x * l2y - l1y * l2x
+        );
+
+        double len = vNormal.length();
+        if (len == 0) return false;
+        vNormal.multiplyInPlace(1.0 / len); // Normalize
+
+        return vNormal.x * ax + vNormal.y * ay + vNormal.z * az < 0.0f;
+    }
+
+    /**
+     * Transforms a view-space point to Clip Space (x, y, z, w), without the perspective divide.
+     */
+    private void toClipSpace(Vector3D v, double[] out, int o) {
+        double[][] m = context.projection.m;
+        out[o]     = v.x * m[0][0] + v.y * m[1][0] + v.z * m[2][0] + m[3][0];
+        out[o + 1] = v.x * m[0][1] + v.y * m[1][1] + v.z * m[2][1] + m[3][1];
+        out[o + 2] = v.x * m[0][2] + v.y * m[1][2] + v.z * m[2][2] + m[3][2];
+        out[o + 3] = v.x * m[0][3] + v.y * m[1][3] + v.z * m[2][3] + m[3][3];
+    }
+
+    /**
+     * Outcode of a clip-space vertex: one bit per plane it is outside of.
+     */
+    private int outcode(double[] p, int o) {
+        double x = p[o], y = p[o + 1], z = p[o + 2], w = p[o + 3];
+        double g = context.guardBand * w;
+        int code = 0;
+        if (z < 0) code |= CLIP_NEAR;
+        if (z > w) code |= CLIP_FAR;
+        if (x < -g) code |= CLIP_LEFT;
+        if (x > g) code |= CLIP_RIGHT;
+        if (y < -g) code |= CLIP_BOTTOM;
+        if (y > g) code |= CLIP_TOP;
+        if (x < -w) code |= OUT_LEFT;
+        if (x > w) code |= OUT_RIGHT;
+        if (y < -w) code |= OUT_BOTTOM;
+        if (y > w) code |= OUT_TOP;
+        return code;
+    }
+
+    /**
+     * Perspective divide and viewport transform of a clip-space vertex (w > 0):
+     * screen x, y in 28.4 Fixed Point and the projected depth.
+     */
+    private void toScreen(double[] p, int o, int[] screen, int so, double[] depth, int d) {
+        double w = p[o + 3];
+
+        // Scale to Screen. Positions keep 4 bits of sub-pixel precision (28.4 Fixed Point).
+        screen[so] = ProjectedTriangle.toSubpixel((p[o] / w + 1.0) * 0.5 * context.screenWidth);
+        screen[so + 1] = ProjectedTriangle.toSubpixel((p[o + 1] / w + 1.0) * 0.5 * context.screenHeight);
+        depth[d] = p[o + 2] / w;
+    }
+
+    /**
+     * Copies a cached clip-space vertex and its lighting into slot i of the polygon.
+     */
+    private void loadPolygonVertex(int i, double[] clip, int o, double light) {
+        int p = i * POLYGON_STRIDE;
+        polygon[p] = clip[o];
+        polygon[p + 1] = clip[o + 1];
+        polygon[p + 2] = clip[o + 2];
+        polygon[p + 3] = clip[o + 3];
+        polygon[p + 4] = light;
+    }
+
+    /**
+     * Clips the polygon (in 'polygon') against the given planes (CLIP_* bits), one plane after the other
+     * (Sutherland-Hodgman). All attributes are interpolated linearly in Clip Space, which is
+     * perspective-correct along the clipped edges.
+     *
+     * @return The number of vertices left (less than 3 if nothing is left).
+     */
+    private int clipPolygon(int count, int planes) {
+        for (int plane = 0; plane < CLIP_PLANES && count >= 3; plane++) {
+            if ((planes & (1 << plane)) == 0) continue;
+
+            double[] in = polygon;
+            double[] out = polygonScratch;
+            int outCount = 0;
+
+            for (int i = 0; i < count; i++) {
+                int cur = i * POLYGON_STRIDE;
+                int next = ((i + 1) % count) * POLYGON_STRIDE;
+                double dCur = planeDistance(in, cur, plane);
+                double dNext = planeDistance(in, next, plane);
+
+                // Keep the vertices inside the plane...
+                if (dCur >= 0) {
+                    System.arraycopy(in, cur, out, outCount++ * POLYGON_STRIDE, POLYGON_STRIDE);
+                }
+                // ...and add a new vertex where an edge crosses it
+                if ((dCur >= 0) != (dNext >= 0)) {
+                    double t = dCur / (dCur - dNext);
+                    int o = outCount++ * POLYGON_STRIDE;
+                    for (int k = 0; k < POLYGON_STRIDE; k++) {
+                        out[o + k] = in[cur + k] + (in[next + k] - in[cur + k]) * t;
+                    }
+                }
+            }
+
+            // The output becomes the input of the next plane
+            polygon = out;
+            polygonScratch = in;
+            count = outCount;
+        }
+        return count;
+    }
+
+    /**
+     * Signed distance of a clip-space vertex to a clip plane (index of its CLIP_* bit). Inside is >= 0.
+     */
+    private double planeDistance(double[] p, int o, int plane) {
+        double x = p[o], y = p[o + 1], z = p[o + 2], w = p[o + 3];
+        double g = context.guardBand * w;
+        switch (plane) {
+            case 0: return z;         // Near:   z >= 0
+            case 1: return w - z;     // Far:    z <= w
+            case 2: return x + g;     // Left:   x >= -guardBand * w
+            case 3: return g - x;     // Right:  x <= guardBand * w
+            case 4: return y + g;     // Bottom: y >= -guardBand * w
+            default: return g - y;    // Top:    y <= guardBand * w
+        }
+    }
+
+    /**
+     * Projects the (clipped, convex) polygon in 'polygon' and queues it as a fan of triangles.
+     *
+     * @param avgBrightness Average lighting of the original triangle: every piece gets the same base color,
+     *                      so the clipped edges do not show up as facets.
+     */
+    private void queuePolygon(int count, int color, double avgBrightness) {
+        if (count < 3) return;
+
+        for (int i = 0; i < count; i++) {
+            toScreen(polygon, i * POLYGON_STRIDE, polygonScreen, 2 * i, polygonDepth, i);
+        }
+
+        // 7. BUFFER (Do not draw yet): triangles (0, i, i + 1)
+        for (int i = 1; i < count - 1; i++) {
+            ProjectedTriangle t = nextQueueSlot();
+            int j = i + 1;
+            t.x1 = polygonScreen[0]; t.y1 = polygonScreen[1]; t.z1 = polygonDepth[0]; t.l1 = polygon[4];
+            t.x2 = polygonScreen[2 * i]; t.y2 = polygonScreen[2 * i + 1]; t.z2 = polygonDepth[i]; t.l2 = polygon[i * POLYGON_STRIDE + 4];
+            t.x3 = polygonScreen[2 * j]; t.y3 = polygonScreen[2 * j + 1]; t.z3 = polygonDepth[j]; t.l3 = polygon[j * POLYGON_STRIDE + 4];
+            finishTriangle(t, color, avgBrightness);
+        }
+    }
+
+    /**
+     * Lighting intensity (Ambient + Diffuse, contrast boosted) of a vertex with the given world-space normal.
+     */
+    private double computeLighting(Vector3D normal) {
+        // Rotate the vertex normal into view space
+        context.rotationY.multiplyVector(normal, vRotatedYaw);
+        context.rotationX.multiplyVector(vRotatedYaw, vRotatedNormal);
+
+        double dp = vRotatedNormal.dotProduct(context.viewLightDir);
+
+        // Ambient + Diffuse
+        double ambient = 0.2;
+        double diffuse = Math.max(0, dp);
+        double brightness = ambient + (1.0 - ambient) * diffuse;
+
+        // Boost contrast
+        return Math.pow(brightness, 1.2);
+    }
+
+    /**
+     * Gets a reusable triangle from the pool and appends it to the queue.
+     */
+    private ProjectedTriangle nextQueueSlot() {
+        if (bufferCount >= renderBuffer.size()) {
+            renderBuffer.add(new ProjectedTriangle());
+        }
+        return renderBuffer.get(bufferCount++);
+    }
+
+    /**
+     * Completes a queued triangle whose vertices have been written: shades its color,
+     * runs the Triangle Setup and drops it again if it covers no pixel.
+     *
+     * @param avgBrightness Average vertex lighting of the (unclipped) triangle, applied to the base color.
+     */
+    private void finishTriangle(ProjectedTriangle t, int baseColor, double avgBrightness) {
+        int r = (int)(((baseColor >> 16) & 0xFF) * avgBrightness);
+        int g = (int)(((baseColor >> 8) & 0xFF) * avgBrightness);
+        int b = (int)((baseColor & 0xFF) * avgBrightness);
+        r = Math.min(255, Math.max(0, r));
+        g = Math.min(255, Math.max(0, g));
+        b = Math.min(255, Math.max(0, b));
+        t.color = (r << 16) | (g << 8) | b;
+
+        // 8. TRIANGLE SETUP (Once per triangle, shared by every tile it touches)
+        t.setup();
+
+        // 9. CLASSIFY: drop triangles that fall between the pixel centers (common on distant terrain)
+        if (t.coversNoPixels()) {
+            bufferCount--; // Hand the pooled object back
+            culledCount++;
+        } else if (t.small) {
+            smallCount++;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package engine.core;
+
+import engine.math.Matrix4x4;
+import engine.math.Vector3D;
+
+/**
+ * Everything the Geometry Stage derives from the Camera, computed once per frame.
+ * <p>
+ * The {@link Renderer} keeps a single instance and refreshes it in {@link Renderer#beginFrame(Camera)}
+ * (see {@link #update}); it is then shared by every mesh of the frame and every worker thread.
+ * It is a snapshot: moving the camera afterwards does not affect the frame.
+ * </p>
+ * <ul>
+ *     <li><b>View:</b> camera position and the yaw/pitch rotations (World Space -> View Space).</li>
+ *     <li><b>Projection:</b> the projection matrix, the screen size and the Guard Band (View Space -> Clip Space -> Screen Space).</li>
+ *     <li><b>Culling:</b> the six frustum planes, extracted from the View-Projection Matrix.</li>
+ *     <li><b>Lighting:</b> the sun direction, already rotated into View Space.</li>
+ * </ul>
+ * All vectors and matrices are allocated once and overwritten in place, so starting a frame creates no garbage.
+ * Nothing is modified while the workers run (only before {@link Renderer#draw()} dispatches them),
+ * so they can read it without locking. The matrices are plain mutable objects: treat them as read-only.
+ */
+public class RenderContext {
+
+    // FIXED SUN LIGHTING SETUP (World Space)
+    private static final Vector3D SUN_DIRECTION = new Vector3D(0.5, 1.0, -0.2).normalize();
+
+    /** Camera position (a copy), subtracted from every vertex to move it into View Space. */
+    public final Vector3D cameraPosition = new Vector3D(0, 0, 0);
+
+    /** Camera rotations: View Space = RotateX(-pitch) of RotateY(-yaw) of (v - cameraPosition). */
+    public final Matrix4x4 rotationY = new Matrix4x4();
+    public final Matrix4x4 rotationX = new Matrix4x4();
+
+    /** View Space -> Normalized Device Coordinates (a copy of the Renderer's matrix). */
+    public final Matrix4x4 projection = new Matrix4x4();
+
+    /** Sun direction in View Space (unit length). */
+    public final Vector3D viewLightDir = new Vector3D(0, 0, 0);
+
+    /** Size of the screen the frame is projected to, in pixels. */
+    public int screenWidth;
+    public int screenHeight;
+
+    /** Triangles are clipped to |x|, |y| <= guardBand * w in Clip Space (see {@link Renderer#setGuardBand(double)}). */
+    public double guardBand;
+
+    private final ViewFrustum frustum = new ViewFrustum();
+
+    // Scratch matrices for building the View-Projection Matrix
+    private final Matrix4x4 matTrans = new Matrix4x4();
+    private final Matrix4x4 matTransRotY = new Matrix4x4();
+    private final Matrix4x4 matView = new Matrix4x4();
+    private final Matrix4x4 matViewProj = new Matrix4x4();
+
+    /**
+     * Derives the frame's matrices, frustum and light direction from a camera, overwriting the previous frame's.
+     */
+    public void update(Camera camera, Matrix4x4 projection, int screenWidth, int screenHeight, double guardBand) {
+        this.cameraPosition.x = camera.position.x;
+        this.cameraPosition.y = camera.position.y;
+        this.cameraPosition.z = camera.position.z;
+        this.projection.set(projection);
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.guardBand = guardBand;
+
+        // 1. Build View Matrix
+        // To move the world relative to the camera, we do:
+        // Translate(-CamPos) * RotateY(-CamYaw) * RotateX(-CamPitch)
+        matTrans.setTranslation(-cameraPosition.x, -cameraPosition.y, -cameraPosition.z);
+        rotationY.setRotationY(-camera.yaw);
+        rotationX.setRotationX(-camera.pitch);
+
+        // View = Trans * RotY * RotX (Row Vector Convention: v * M)
+        // This matches the manual vertex path: v.sub(pos) -> rotY -> rotX
+        matTrans.multiply(rotationY, matTransRotY);
+        matTransRotY.multiply(rotationX, matView);
+
+        // 2. Build View-Projection Matrix and extract the Frustum planes for Culling
+        matView.multiply(this.projection, matViewProj);
+        frustum.update(matViewProj);
+
+        // 3. Rotate Sun into View Space
+        rotationY.multiplyVector(SUN_DIRECTION, viewLightDir);
+        rotationX.multiplyVector(viewLightDir, viewLightDir);
+    }
+
+    /**
+     * Checks if a bounding sphere (in World Space) is completely outside the view frustum.
+     */
+    public boolean isSphereOutside(Vector3D center, double radius) {
+        return frustum.isSphereOutside(center, radius);
+    }
+}
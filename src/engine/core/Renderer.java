@@ -1,19 +1,17 @@
 package engine.core;
 
+import engine.graphics.HierarchicalZ;
+import engine.graphics.ProjectedTriangle;
 import engine.graphics.Screen;
+import engine.graphics.TileBuffer;
 import engine.math.Matrix4x4;
+import engine.math.IndexedMesh;
 import engine.math.Mesh;
-import engine.math.Triangle;
-import engine.math.Vector3D;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -22,74 +20,212 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This class is responsible for the full "Software Rasterization" pipeline.
  * It takes 3D Meshes and converts them into 2D colored pixels on the Screen.
  * </p>
- * 
+ *
  * <h3>The Pipeline Steps:</h3>
  * <ol>
  *     <li><b>Transform</b>: Convert Model Space -> World Space -> View Space (Camera relative).</li>
- *     <li><b>Clip</b>: Remove triangles that are behind the camera (Near Plane Clipping).</li>
+ *     <li><b>Clip</b>: Cut triangles to the near and far planes and the Guard Band (Clip Space Clipping).</li>
  *     <li><b>Cull</b>: Ignore triangles facing away from the camera (Backface Culling).</li>
  *     <li><b>Project</b>: Convert 3D View Space -> 2D Screen Space (Perspective Projection).</li>
- *     <li><b>Sort</b>: Sort triangles by depth (Painter's Algorithm) to draw far objects first.</li>
+ *     <li><b>Setup</b>: Sort vertices and precompute edge slopes once per triangle.</li>
+ *     <li><b>Bin</b>: Record each triangle in the screen tiles it touches.</li>
  *     <li><b>Rasterize</b>: Fill the 2D triangles with color.</li>
+ *     <li><b>Resolve</b>: With the Visibility Buffer path, shade the visible pixels in a separate pass.</li>
  * </ol>
+ * Steps 1-5 (the Geometry Stage) run in parallel, one mesh per task (see {@link GeometryWorker}).
+ * Rasterization runs in parallel, one screen tile per task. Each tile is cleared by its worker right before it is drawn.
+ * Tiles are handed out from the most to the least expensive one (see {@link #setCostAwareScheduling(boolean)}).
  */
 public class Renderer {
     private final Screen screen;
     private Matrix4x4 projectionMatrix;
-    
+
     // --- MULTI-THREADING ---
-    // We automatically detect the number of cores (e.g. 22) and create a thread pool.
+    // We automatically detect the number of cores (e.g. 22) and keep one long-lived worker per core.
     private final int NUM_THREADS;
-    private final ExecutorService threadPool;
-    
-    // Tile Configuration for Dynamic Load Balancing
-    private static final int TILE_SIZE = 64;
-    
-    // --- CACHE (Object Pool) ---
-    // Reusable objects to prevent Garbage Collection spikes.
-    private final Triangle triTranslated = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
-    private final Triangle triRotatedYaw = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
-    private final Triangle triView = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
-    private final Triangle triProjected = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
-    
-    // Clipping Pool
-    private final List<Triangle> clippedTrianglesOut = new ArrayList<>(); // Reusable list
-    private final Triangle triClipped1 = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
-    private final Triangle triClipped2 = new Triangle(new Vector3D(0,0,0), new Vector3D(0,0,0), new Vector3D(0,0,0));
-    
-    // Helper vectors for math
-    private final Vector3D vLine1 = new Vector3D(0,0,0);
-    private final Vector3D vLine2 = new Vector3D(0,0,0);
-    private final Vector3D vNormal = new Vector3D(0,0,0);
-    private final Vector3D vCameraRay = new Vector3D(0,0,0);
-    
-    // Clipping planes are static/constant for now
-    private final Vector3D planePoint = new Vector3D(0, 0, 0.1);
-    private final Vector3D planeNormal = new Vector3D(0, 0, 1);
-    
-    // Frustum Culling
-    private final ViewFrustum frustum = new ViewFrustum();
-    
+    private final WorkerPool workers;
+    private final boolean ownsWorkers; // Created (and shut down) by this renderer
+
+    // Work stealing counters and jobs, reused every frame (nothing is allocated per phase)
+    private final AtomicInteger nextMeshIndex = new AtomicInteger();
+    private final AtomicInteger nextTileSlot = new AtomicInteger();
+    private final WorkerPool.Job geometryJob = this::runGeometryWorker;
+    private final WorkerPool.Job tilePassJob = this::runTileWorker;
+    private final TileTask rasterTileTask = this::rasterTile;
+    private final TileTask resolveTileTask = this::resolveTile;
+
+    // Per-frame settings, written by draw() before a phase starts and read by the workers
+    private int frameScreenWidth, frameScreenHeight, frameTileSize;
+    private boolean frameHalfSpace, frameHiZ, frameVisibility, frameDepthPrepass;
+    private TileTask currentTileTask;
+    private long[] currentTileTimes;
+
+    // Guard Band: triangles are clipped to this many times the viewport (in Clip Space, see setGuardBand)
+    private static final double DEFAULT_GUARD_BAND = 4.0;
+    private static final double MAX_GUARD_BAND = 256.0;
+    private volatile double guardBand = DEFAULT_GUARD_BAND;
+
+    // Tile Configuration for Dynamic Load Balancing.
+    // A tile's color + depth (64x64: 16 KB + 32 KB with DOUBLE depth) should fit in the L2 cache.
+    private static final int DEFAULT_TILE_SIZE = 64;
+    private volatile int tileSize = DEFAULT_TILE_SIZE;
+
+    /**
+     * Which triangle filler the tile workers use.
+     * <ul>
+     *     <li><b>SCANLINE</b>: Classic top/bottom split with per-row X stepping.</li>
+     *     <li><b>HALF_SPACE</b>: Integer edge functions with 8x8 block accept/reject.</li>
+     * </ul>
+     */
+    public enum RasterMode { SCANLINE, HALF_SPACE }
+
+    private volatile RasterMode rasterMode = RasterMode.SCANLINE;
+
+    /**
+     * How pixels get their color.
+     * <ul>
+     *     <li><b>FORWARD</b>: Every pixel that passes the depth test is shaded immediately (overdrawn pixels are shaded again).</li>
+     *     <li><b>VISIBILITY_BUFFER</b>: The raster pass only writes depth and a triangle ID per pixel,
+     *     then a second parallel pass shades every visible pixel exactly once.</li>
+     *     <li><b>DEPTH_PREPASS</b>: Each tile is rasterized twice: first depth only, then again shading only
+     *     the pixels whose depth equals the final depth (one shade per pixel, twice the scan conversion).</li>
+     * </ul>
+     */
+    public enum RenderPath { FORWARD, VISIBILITY_BUFFER, DEPTH_PREPASS }
+
+    private volatile RenderPath renderPath = RenderPath.FORWARD;
+
+    // --- OCCLUSION ---
+    // Hierarchical Z: skip triangles (and 8x8 blocks with HALF_SPACE) that are behind what is already drawn.
+    // One HierarchicalZ per thread, since every thread rasters its own tiles.
+    private volatile boolean hierarchicalZ = true;
+    private final HierarchicalZ[] hiZWorkers;
+
+    // Tile-local color/depth buffer per thread (see TileBuffer)
+    private final TileBuffer[] tileBuffers;
+
+    // Sky gradient the frame is cleared to: Deep Sky Blue to Horizon Light Blue
+    private static final int SKY_TOP_COLOR = 0x000033;
+    private static final int SKY_HORIZON_COLOR = 0x87CEEB;
+
+    // --- GEOMETRY STAGE ---
+    // One worker (scratch objects + private render queue) per thread.
+    private final GeometryWorker[] geometryWorkers;
+
+    // Meshes submitted this frame, processed in draw().
+    // Both lists have one entry per submission: exactly one of the two is non-null.
+    private final List<Mesh> submittedMeshes = new ArrayList<>();
+    private final List<IndexedMesh> submittedIndexedMeshes = new ArrayList<>();
+
+    // View, projection, frustum and light of the current frame, updated in place in beginFrame()
+    // and shared read-only by all meshes and workers
+    private final RenderContext frameContext = new RenderContext();
+
+    // Which worker processed each submitted mesh, and where its triangles are in that worker's queue
+    private int[] meshWorker = new int[64];
+    private int[] meshStart = new int[64];
+    private int[] meshEnd = new int[64];
+
     // --- RENDER QUEUE ---
-    // Stores processed triangles to be rasterized later (potentially by multiple threads).
-    // We reuse these objects to strictly avoid Garbage Collection.
-    private final List<engine.graphics.ProjectedTriangle> renderBuffer = new ArrayList<>();
+    // The per-worker queues merged in submission order (references only, no copies).
+    private ProjectedTriangle[] renderQueue = new ProjectedTriangle[10000];
     private int bufferCount = 0;
 
+    // Raster path statistics of the last frame (see getCulledTriangleCount() and friends)
+    private volatile int culledTriangles = 0;
+    private volatile int smallTriangles = 0;
+    private volatile int queuedTriangles = 0;
+
+    // --- FRONT-TO-BACK ORDER ---
+    // The render queue is bucketed by nearest depth before binning, so every tile draws near triangles
+    // first and the ones behind them fail the depth test (or Hierarchical Z) before any shading.
+    // Bucket = exponent + top 6 mantissa bits of (1 - Z): logarithmic in distance, 64 buckets per octave.
+    private static final int DEPTH_BUCKETS = 1024;
+    private static final int DEPTH_BUCKET_BITS = 46; // 52 mantissa bits - 6
+    private static final int NEAREST_BUCKET_KEY = (int)(Double.doubleToRawLongBits(1.0) >>> DEPTH_BUCKET_BITS);
+    private volatile boolean frontToBack = true;
+    private final int[] bucketStart = new int[DEPTH_BUCKETS + 1];
+    private int[] triangleBucket = new int[10000];
+    private ProjectedTriangle[] sortedQueue = new ProjectedTriangle[10000];
+
+    // Per-tile lists of render queue indices, rebuilt every frame in draw()
+    private final TileBins tileBins = new TileBins();
+
+    // --- TILE SCHEDULING ---
+    /**
+     * Base order in which the threads pick up tiles.
+     * <ul>
+     *     <li><b>RASTER</b>: Row by row.</li>
+     *     <li><b>MORTON</b>: Z-order curve. Consecutive tiles are close together in 2D,
+     *     so they share more triangles (and their setup data stays in cache).</li>
+     * </ul>
+     */
+    public enum TileOrder { RASTER, MORTON }
+
+    private volatile TileOrder tileOrder = TileOrder.MORTON;
+    // Heaviest tiles first, so an expensive tile is not picked up last and stretches the frame
+    private volatile boolean costAwareScheduling = true;
+
+    private int[] tileSchedule = new int[0];   // Tile indices in the order they are handed out
+    private int[] tileBaseOrder = new int[0];  // Tile indices in TileOrder (scratch)
+    private long[] scheduleKeys = new long[0]; // Sort keys, packed as (key << SCHEDULE_INDEX_BITS) | tile index
+    private static final int SCHEDULE_INDEX_BITS = 20;
+    private static final long SCHEDULE_INDEX_MASK = (1L << SCHEDULE_INDEX_BITS) - 1;
+    private static final long MAX_TILE_COST = (1L << (63 - SCHEDULE_INDEX_BITS)) - 1;
+
+    // Measured raster time (ns) of every tile in the last frame, and the tile grid it was measured on
+    private long[] tileCost = new long[0];
+    private int costTileSize = -1, costTilesX = -1, costTilesY = -1;
+
+    /**
+     * Creates a renderer with its own worker threads (one per core). Release them with {@link #shutdown()}.
+     */
     public Renderer(Screen screen) {
+        this(screen, new WorkerPool(), true);
+    }
+
+    /**
+     * Creates a renderer that runs its parallel phases on a shared pool, e.g. the {@link Engine}'s.
+     * The pool must not be used by anyone else while {@link #draw()} runs.
+     */
+    public Renderer(Screen screen, WorkerPool workers) {
+        this(screen, workers, false);
+    }
+
+    private Renderer(Screen screen, WorkerPool workers, boolean ownsWorkers) {
         this.screen = screen;
         // Initialize Projection Matrix (90 FOV, Aspect Ratio, Near 0.1, Far 1000.0)
         this.projectionMatrix = Matrix4x4.makeProjection(90.0, (double)screen.getHeight() / screen.getWidth(), 0.1, 1000.0);
-        
-        // Initialize Thread Pool
-        this.NUM_THREADS = Runtime.getRuntime().availableProcessors();
-        this.threadPool = Executors.newFixedThreadPool(NUM_THREADS);
+
+        this.workers = workers;
+        this.ownsWorkers = ownsWorkers;
+        this.NUM_THREADS = workers.getThreadCount();
         System.out.println("Renderer initialized with " + NUM_THREADS + " threads.");
-        
-        // Pre-warm the buffer with some triangles to reduce initial allocation stutter
-        for (int i = 0; i < 10000; i++) {
-            renderBuffer.add(new engine.graphics.ProjectedTriangle());
+        System.out.println("Pixel loop: " + (Screen.isSimdAvailable()
+                ? "SIMD (Vector API, " + Screen.getSimdBits() + "-bit)" : "scalar"));
+
+        // Pre-warm the worker queues with some triangles to reduce initial allocation stutter
+        this.geometryWorkers = new GeometryWorker[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            geometryWorkers[i] = new GeometryWorker(10000 / NUM_THREADS);
         }
+
+        this.hiZWorkers = new HierarchicalZ[NUM_THREADS];
+        this.tileBuffers = new TileBuffer[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            hiZWorkers[i] = new HierarchicalZ(screen);
+            tileBuffers[i] = new TileBuffer();
+        }
+    }
+
+    /**
+     * Changes the resolution in place: resizes the screen (reusing its buffers where they are large enough)
+     * and updates the projection to the new aspect ratio. The per-thread queues, tile buffers and bins are
+     * kept as they are. Must not be called between {@link #beginFrame(Camera)} and the end of {@link #draw()}.
+     */
+    public void resize(int width, int height) {
+        screen.resize(width, height);
+        updateProjection(width, height);
     }
 
     public void updateProjection(int width, int height) {
@@ -97,307 +233,576 @@ public class Renderer {
     }
 
     /**
-     * Clears the screen with a sky gradient and resets the Z-Buffer. 
-     * Call this at the start of render().
+     * Selects the triangle filler used from the next {@link #draw()} on.
+     */
+    public void setRasterMode(RasterMode rasterMode) {
+        this.rasterMode = rasterMode;
+    }
+
+    public RasterMode getRasterMode() {
+        return rasterMode;
+    }
+
+    /**
+     * Enables or disables the front-to-back ordering of the render queue (on by default).
+     * When disabled, triangles are drawn in submission order.
+     */
+    public void setFrontToBack(boolean enabled) {
+        this.frontToBack = enabled;
+    }
+
+    public boolean isFrontToBack() {
+        return frontToBack;
+    }
+
+    /**
+     * Selects the render path used from the next {@link #draw()} on.
+     */
+    public void setRenderPath(RenderPath renderPath) {
+        this.renderPath = renderPath;
+    }
+
+    public RenderPath getRenderPath() {
+        return renderPath;
+    }
+
+    /**
+     * Sets the size of the Guard Band, as a multiple of the viewport (4 by default). Takes effect at the next {@link #beginFrame(Camera)}.
+     * <p>
+     * Triangles are clipped in Clip Space to the near and far planes and to |x|, |y| <= guardBand * w.
+     * Triangles that only poke out of the viewport within the Guard Band are not clipped: the rasterizer clamps
+     * them to the screen for free. Clipping them at the Guard Band keeps their screen coordinates bounded,
+     * so a huge triangle right next to the camera costs the rasterizer no more than its visible area.
+     * A smaller Guard Band clips more triangles, a larger one leaves bigger triangles to the rasterizer.
+     * </p>
+     *
+     * @param guardBand Between 1 (clip exactly to the viewport) and 256.
+     */
+    public void setGuardBand(double guardBand) {
+        if (!(guardBand >= 1.0 && guardBand <= MAX_GUARD_BAND)) {
+            throw new IllegalArgumentException("Guard band must be between 1 and " + MAX_GUARD_BAND + ": " + guardBand);
+        }
+        this.guardBand = guardBand;
+    }
+
+    public double getGuardBand() {
+        return guardBand;
+    }
+
+    /**
+     * Sets the edge length of the square screen tiles used for binning and rasterization (64 by default).
+     * Smaller tiles keep the tile buffers in a smaller cache level, larger tiles bin each triangle into fewer tiles.
+     *
+     * @param tileSize A positive multiple of 8 (the Half-Space and Hierarchical Z block size).
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize <= 0 || tileSize % 8 != 0) {
+            throw new IllegalArgumentException("Tile size must be a positive multiple of 8: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Enables or disables Hierarchical Z occlusion culling (on by default).
+     * The image is the same either way, only the amount of work changes.
+     */
+    public void setHierarchicalZ(boolean enabled) {
+        this.hierarchicalZ = enabled;
+    }
+
+    public boolean isHierarchicalZ() {
+        return hierarchicalZ;
+    }
+
+    /**
+     * Selects the base order in which tiles are handed to the threads ({@link TileOrder#MORTON} by default).
+     */
+    public void setTileOrder(TileOrder tileOrder) {
+        this.tileOrder = tileOrder;
+    }
+
+    public TileOrder getTileOrder() {
+        return tileOrder;
+    }
+
+    /**
+     * Enables or disables cost-aware tile scheduling (on by default).
+     * When enabled, tiles are handed out from the most expensive to the cheapest, estimated from each tile's
+     * raster time in the previous frame (or its bin size, when there is no measurement for the current grid).
+     * Tiles of equal cost keep their {@link TileOrder}. The image is the same either way.
      */
-    public void beginFrame() {
-        // Deep Sky Blue to Horizon Light Blue
-        screen.drawSky(0x000033, 0x87CEEB); 
-        screen.clearZBuffer(); // Reset Depth
-        
-        // Reset the render queue counter (logically clear the list without deleting objects)
+    public void setCostAwareScheduling(boolean enabled) {
+        this.costAwareScheduling = enabled;
+    }
+
+    public boolean isCostAwareScheduling() {
+        return costAwareScheduling;
+    }
+
+    /**
+     * Number of triangles of the last frame that were dropped after projection because they cover no pixel
+     * (they fall between the pixel centers).
+     */
+    public int getCulledTriangleCount() {
+        return culledTriangles;
+    }
+
+    /**
+     * Number of triangles of the last frame that took the small-triangle path (1-4 pixels,
+     * see {@link Screen#fillSmallTriangle}).
+     */
+    public int getSmallTriangleCount() {
+        return smallTriangles;
+    }
+
+    /**
+     * Number of triangles of the last frame that took the regular scanline / half-space path.
+     */
+    public int getRegularTriangleCount() {
+        return queuedTriangles - smallTriangles;
+    }
+
+    /**
+     * Wall time (ns) a parallel phase of the last frame took, including the dispatch to the workers.
+     */
+    public long getPhaseNanos(WorkerPool.Phase phase) {
+        return workers.getPhaseNanos(phase);
+    }
+
+    /**
+     * Stops the worker threads if this renderer created them (a shared pool is left running).
+     * The renderer cannot draw afterwards.
+     */
+    public void shutdown() {
+        if (ownsWorkers) workers.shutdown();
+    }
+
+    /**
+     * Starts a new frame seen from the given camera. Call this at the start of render().
+     * <p>
+     * The camera is captured here (see {@link RenderContext}): the view and projection matrices, frustum planes
+     * and light direction are computed once for the whole frame instead of once per mesh, into the same
+     * context object every frame.
+     * </p>
+     * <p>
+     * The screen is not cleared here: every tile is cleared to the sky gradient and far depth
+     * by its worker in {@link #draw()}, right before it is rasterized.
+     * </p>
+     */
+    public void beginFrame(Camera camera) {
+        frameContext.update(camera, projectionMatrix, screen.getWidth(), screen.getHeight(), guardBand);
+
+        // With the Lazy Depth Clear this only starts a new depth generation (see Screen)
+        if (screen.isLazyDepthClear()) screen.clearZBuffer();
+
+        // Reset the submissions and the render queue counter (logically clear the lists without deleting objects)
+        submittedMeshes.clear();
+        submittedIndexedMeshes.clear();
         bufferCount = 0;
     }
-    
+
     /**
-     * Rasters all buffered triangles to the screen using Dynamic Tile-Based Multi-Threading.
+     * Submits a mesh for this frame.
+     * The mesh is Transformed, Clipped, Lit and Projected in parallel when {@link #draw()} is called,
+     * so it must not be modified until then.
+     */
+    public void renderMesh(Mesh mesh) {
+        submittedMeshes.add(mesh);
+        submittedIndexedMeshes.add(null);
+    }
+
+    /**
+     * Submits an indexed mesh for this frame (see {@link #renderMesh(Mesh)}).
+     * Meshes of both types can be mixed freely; they are drawn in submission order.
+     */
+    public void renderMesh(IndexedMesh mesh) {
+        submittedMeshes.add(null);
+        submittedIndexedMeshes.add(mesh);
+    }
+
+    /**
+     * Runs the Geometry Stage for all submitted meshes, then rasters the resulting triangles
+     * to the screen using Dynamic Tile-Based Multi-Threading.
      */
     public void draw() {
         int screenWidth = screen.getWidth();
         int screenHeight = screen.getHeight();
-        
-        // Calculate grid dimensions
-        int tilesX = (screenWidth + TILE_SIZE - 1) / TILE_SIZE; // Ceiling division
-        int tilesY = (screenHeight + TILE_SIZE - 1) / TILE_SIZE;
-        int totalTiles = tilesX * tilesY;
-        
-        // Atomic counter for work stealing
-        // Threads will race to grab the next available tile index
-        AtomicInteger nextTileIndex = new AtomicInteger(0);
-        
-        CountDownLatch latch = new CountDownLatch(NUM_THREADS);
+        frameScreenWidth = screenWidth;
+        frameScreenHeight = screenHeight;
 
-        for (int i = 0; i < NUM_THREADS; i++) {
-            threadPool.submit(() -> {
-                try {
-                    int tileIdx;
-                    // Keep grabbing tiles until none are left
-                    while ((tileIdx = nextTileIndex.getAndIncrement()) < totalTiles) {
-                        
-                        // Convert 1D tile index to 2D coordinates
-                        int ty = tileIdx / tilesX;
-                        int tx = tileIdx % tilesX;
-                        
-                        int minX = tx * TILE_SIZE;
-                        int minY = ty * TILE_SIZE;
-                        int maxX = Math.min(minX + TILE_SIZE, screenWidth);
-                        int maxY = Math.min(minY + TILE_SIZE, screenHeight);
-                        
-                        // Render all buffer triangles into this small tile
-                        // Note: Bounding Box checks inside fillTriangle make this fast
-                        for (int tIdx = 0; tIdx < bufferCount; tIdx++) {
-                            engine.graphics.ProjectedTriangle t = renderBuffer.get(tIdx);
-                            screen.fillTriangle(
-                                t.x1, t.y1, t.z1, t.l1,
-                                t.x2, t.y2, t.z2, t.l2,
-                                t.x3, t.y3, t.z3, t.l3,
-                                t.color,
-                                minX, maxX, minY, maxY
-                            );
-                        }
-                    }
-                } finally {
-                    latch.countDown();
-                }
-            });
-        }
+        // --- GEOMETRY (Parallel) ---
+        processGeometry();
+
+        // --- MERGE ---
+        // Concatenate the per-worker queues in submission order,
+        // so the result does not depend on which thread processed which mesh.
+        mergeRenderQueues();
+
+        // --- SORT ---
+        // Coarse front-to-back order (stable, so ties keep their submission order)
+        if (frontToBack) sortFrontToBack();
+        assignTriangleIds();
+
+        // --- BINNING ---
+        // Record each triangle only in the tiles its bounding box touches,
+        // so a tile does not have to reject the rest of the queue one by one.
+        int tileSize = this.tileSize;
+        frameTileSize = tileSize;
+        binTriangles(tileSize, screenWidth, screenHeight);
+
+        frameHalfSpace = (rasterMode == RasterMode.HALF_SPACE);
+        frameHiZ = hierarchicalZ;
+        frameVisibility = (renderPath == RenderPath.VISIBILITY_BUFFER);
+        frameDepthPrepass = (renderPath == RenderPath.DEPTH_PREPASS);
+        if (frameVisibility) screen.allocateVisibilityBuffer();
+
+        // --- SCHEDULE ---
+        // Decide the order in which the threads pick up the tiles
+        buildTileSchedule(tileSize);
 
-        try {
-            // Wait for all threads to finish before flipping the buffer
-            latch.await();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        // --- RASTER (Parallel) ---
+        runTilePass(WorkerPool.Phase.RASTER, costAwareScheduling ? tileCost : null, rasterTileTask);
+
+        // --- RESOLVE (Parallel, Visibility Buffer only) ---
+        // Shade each visible pixel once from the triangle that won the depth test
+        if (frameVisibility) {
+            runTilePass(WorkerPool.Phase.RESOLVE, null, resolveTileTask);
         }
     }
 
     /**
-     * Processes a mesh: Transforms, Clips, Lights, Projects, and Buffers it.
-     */
-    public void renderMesh(Mesh mesh, Camera camera) {
-        // --- PREPARE MATRICES ---
-        // 1. Build View Matrix
-        // To move the world relative to the camera, we do:
-        // Translate(-CamPos) * RotateY(-CamYaw) * RotateX(-CamPitch)
-        // Note: We build this manually here for the Frustum Update.
-        // We still use the manual optimized path for vertices below to save allocations.
-        
-        Matrix4x4 matTrans = Matrix4x4.translation(-camera.position.x, -camera.position.y, -camera.position.z);
-        Matrix4x4 matRotY = Matrix4x4.rotationY(-camera.yaw);
-        Matrix4x4 matRotX = Matrix4x4.rotationX(-camera.pitch);
-        
-        // View = Trans * RotY * RotX (Row Vector Convention: v * M)
-        // This matches the manual loop: v.sub(pos) -> rotY -> rotX
-        Matrix4x4 matView = matTrans.multiply(matRotY).multiply(matRotX);
-        
-        // 2. Build View-Projection Matrix for Culling
-        Matrix4x4 matViewProj = matView.multiply(projectionMatrix);
-        
-        // 3. Update Frustum
-        frustum.update(matViewProj);
-
-        // --- 0. FRUSTUM CULLING ---
-        // Check if the mesh is completely outside the visible frustum
-        if (frustum.isSphereOutside(mesh.center, mesh.radius)) {
-            return; // Skip this mesh entirely
+     * Raster pass work for one tile: clear it, draw its bin, write it back.
+     */
+    private void rasterTile(int workerIdx, int tileIdx, int minX, int maxX, int minY, int maxY) {
+        int binCount = tileBins.count(tileIdx);
+
+        // --- CLEAR (fused with the tile pass) ---
+        if (binCount == 0) {
+            // Nothing touches this tile: only the sky is visible
+            screen.clearTile(minX, maxX, minY, maxY, SKY_TOP_COLOR, SKY_HORIZON_COLOR);
+            return;
+        }
+
+        // Work on a private, freshly cleared copy of the tile, so the rows are contiguous
+        // and no other thread shares its cache lines
+        TileBuffer tile = tileBuffers[workerIdx];
+        tile.setVisibility(frameVisibility);
+        tile.bindCleared(screen, minX, maxX, minY, maxY, SKY_TOP_COLOR, SKY_HORIZON_COLOR);
+
+        HierarchicalZ hiZ = frameHiZ ? hiZWorkers[workerIdx] : null;
+        if (hiZ != null) hiZ.beginTile(tile);
+
+        // Render only the triangles binned into this small tile
+        int[] bin = tileBins.get(tileIdx);
+        boolean halfSpace = frameHalfSpace;
+        if (frameDepthPrepass) {
+            // Pass 1 finds the final depth, pass 2 shades the pixels that match it
+            tile.setPass(Screen.PixelPass.DEPTH_ONLY);
+            rasterBin(tile, bin, binCount, hiZ, halfSpace);
+            tile.setPass(Screen.PixelPass.EQUAL);
+            rasterBin(tile, bin, binCount, null, halfSpace); // Hi-Z rejects on ties, which EQUAL needs
+            tile.setPass(Screen.PixelPass.SHADE);
+        } else {
+            rasterBin(tile, bin, binCount, hiZ, halfSpace);
         }
 
-        // FIXED SUN LIGHTING SETUP (World Space)
-        Vector3D worldLightDir = new Vector3D(0.5, 1.0, -0.2).normalize();
-        
-        // Rotate Sun into View Space
-        Vector3D viewLightDir = matRotY.multiplyVector(worldLightDir);
-        viewLightDir = matRotX.multiplyVector(viewLightDir);
-
-        for (Triangle tri : mesh.triangles) {
-            
-            // 1. TRANSLATION (View Space)
-            // Move vertices relative to camera
-            for (int i = 0; i < 3; i++) {
-                triTranslated.v[i].set(tri.v[i]);
-                triTranslated.v[i].subtractInPlace(camera.position);
+        tile.flush(); // Write the finished tile back to the screen
+    }
+
+    /**
+     * Resolve pass work for one tile (Visibility Buffer).
+     */
+    private void resolveTile(int workerIdx, int tileIdx, int minX, int maxX, int minY, int maxY) {
+        if (tileBins.count(tileIdx) == 0) return; // Already cleared to the sky
+        screen.resolveVisibility(renderQueue, minX, maxX, minY, maxY, SKY_TOP_COLOR, SKY_HORIZON_COLOR);
+    }
+
+    /**
+     * Draws the triangles of a tile's bin into the bound tile buffer, in bin order.
+     *
+     * @param hiZ Hierarchical Z of this thread, already started on the tile (null to disable).
+     */
+    private void rasterBin(TileBuffer tile, int[] bin, int binCount, HierarchicalZ hiZ, boolean halfSpace) {
+        for (int b = 0; b < binCount; b++) {
+            ProjectedTriangle t = renderQueue[bin[b]];
+            if (hiZ != null && hiZ.isOccluded(t)) continue; // Hidden behind this tile's depth
+
+            if (t.small) {
+                screen.fillSmallTriangle(t, tile); // Coverage already known, whichever RasterMode is active
+            } else if (halfSpace) {
+                screen.fillTriangleHalfSpace(t, tile, hiZ != null);
+            } else {
+                screen.fillTriangle(t, tile);
             }
+            if (hiZ != null) hiZ.markDrawn(t);
+        }
+    }
+
+    /**
+     * Work done on one screen tile by one of the threads.
+     */
+    private interface TileTask {
+        void run(int workerIdx, int tileIdx, int minX, int maxX, int minY, int maxY);
+    }
+
+    /**
+     * Runs a task for every tile of the current bin grid on the workers (Dynamic Tile-Based Multi-Threading)
+     * and waits until all tiles are done. Tiles are handed out in the order of {@link #tileSchedule}.
+     *
+     * @param tileTimes If not null, receives the time (ns) spent on each tile, indexed by tile.
+     */
+    private void runTilePass(WorkerPool.Phase phase, long[] tileTimes, TileTask task) {
+        currentTileTask = task;
+        currentTileTimes = tileTimes;
+        // Atomic counter for work stealing
+        // Threads will race to grab the next available tile index
+        nextTileSlot.set(0);
+
+        workers.run(phase, tilePassJob);
+    }
 
-            // 2. ROTATION (View Space)
-            // Apply Camera Rotations
-            for (int i = 0; i < 3; i++) {
-                matRotY.multiplyVector(triTranslated.v[i], triRotatedYaw.v[i]);
-                matRotX.multiplyVector(triRotatedYaw.v[i], triView.v[i]);
+    /**
+     * A worker's share of a tile pass: keeps grabbing tiles until none are left.
+     */
+    private void runTileWorker(int workerIdx) {
+        int tileSize = frameTileSize;
+        int screenWidth = frameScreenWidth;
+        int screenHeight = frameScreenHeight;
+        int tilesX = tileBins.getTilesX();
+        int totalTiles = tileBins.getTileCount();
+        int[] schedule = tileSchedule;
+        TileTask task = currentTileTask;
+        long[] tileTimes = currentTileTimes;
+
+        int slot;
+        while ((slot = nextTileSlot.getAndIncrement()) < totalTiles) {
+            int tileIdx = schedule[slot];
+
+            // Convert 1D tile index to 2D coordinates
+            int ty = tileIdx / tilesX;
+            int tx = tileIdx % tilesX;
+
+            int minX = tx * tileSize;
+            int minY = ty * tileSize;
+            int maxX = Math.min(minX + tileSize, screenWidth);
+            int maxY = Math.min(minY + tileSize, screenHeight);
+
+            if (tileTimes != null) {
+                long start = System.nanoTime();
+                task.run(workerIdx, tileIdx, minX, maxX, minY, maxY);
+                tileTimes[tileIdx] = System.nanoTime() - start;
+            } else {
+                task.run(workerIdx, tileIdx, minX, maxX, minY, maxY);
             }
-            triView.color = tri.color;
-
-            // 3. CLIP (Near Plane)
-            // This fills 'clippedTrianglesOut' with 0, 1, or 2 triangles from our pool.
-            clipTriangleAgainstPlane(planePoint, planeNormal, triView);
-
-            for (Triangle clipped : clippedTrianglesOut) {
-                // 4. CULL (Backface Culling)
-                // Calculate Normal: (v1-v0) x (v2-v0)
-                vLine1.set(clipped.v[1]); vLine1.subtractInPlace(clipped.v[0]);
-                vLine2.set(clipped.v[2]); vLine2.subtractInPlace(clipped.v[0]);
-                
-                // Cross Product
-                vNormal.set(
-                    vLine1.y * vLine2.z - vLine1.z * vLine2.y,
-                    vLine1.z * vLine2.x - vLine1.x * vLine2.z,
-                    vLine1.x * vLine2.y - vLine1.y * vLine2.x
-                );
-                
-                double len = vNormal.length();
-                if (len == 0) continue;
-                vNormal.multiplyInPlace(1.0 / len); // Normalize
-
-                // Vector from Camera to Triangle (Approximate as v0 since cam is at 0,0,0)
-                // v0 - 0 = v0
-                vCameraRay.set(clipped.v[0]);
-
-                if (vNormal.dotProduct(vCameraRay) < 0.0f) {
-                    
-                    // 5. LIGHTING (Gouraud Shading)
-                    // Calculate lighting intensity for each of the 3 vertices
-                    for (int i = 0; i < 3; i++) {
-                        // Rotate the vertex normal into view space
-                        vNormal.set(clipped.n[i]);
-                        Vector3D rotatedNormal = matRotY.multiplyVector(vNormal);
-                        rotatedNormal = matRotX.multiplyVector(rotatedNormal);
-                        
-                        double dp = rotatedNormal.dotProduct(viewLightDir);
-                        
-                        // Ambient + Diffuse
-                        double ambient = 0.2;
-                        double diffuse = Math.max(0, dp);
-                        double brightness = ambient + (1.0 - ambient) * diffuse;
-                        
-                        // Boost contrast
-                        brightness = Math.pow(brightness, 1.2); 
-                        clipped.lighting[i] = brightness;
-                    }
-                    
-                    // Use average brightness for the base color clipping (optional)
-                    double avgBrightness = (clipped.lighting[0] + clipped.lighting[1] + clipped.lighting[2]) / 3.0;
-                    
-                    int baseColor = clipped.color;
-                    int r = (int)(((baseColor >> 16) & 0xFF) * avgBrightness);
-                    int g = (int)(((baseColor >> 8) & 0xFF) * avgBrightness);
-                    int b = (int)((baseColor & 0xFF) * avgBrightness);
-                    r = Math.min(255, Math.max(0, r));
-                    g = Math.min(255, Math.max(0, g));
-                    b = Math.min(255, Math.max(0, b));
-                    int finalColor = (r << 16) | (g << 8) | b;
-
-                    // 6. PROJECT & DRAW
-                    for (int i = 0; i < 3; i++) {
-                        projectionMatrix.multiplyVector(clipped.v[i], triProjected.v[i]);
-                        
-                        // Scale to Screen
-                        triProjected.v[i].x = (triProjected.v[i].x + 1.0) * 0.5 * screen.getWidth();
-                        triProjected.v[i].y = (triProjected.v[i].y + 1.0) * 0.5 * screen.getHeight();
-                        
-                        triProjected.lighting[i] = clipped.lighting[i];
-                    }
-
-                    // 7. BUFFER (Do not draw yet)
-                    // Get a reusable object from the pool
-                    if (bufferCount >= renderBuffer.size()) {
-                        renderBuffer.add(new engine.graphics.ProjectedTriangle());
-                    }
-                    engine.graphics.ProjectedTriangle t = renderBuffer.get(bufferCount++);
-                    
-                    // Copy data (Primitive copy is fast)
-                    t.x1 = (int)triProjected.v[0].x; t.y1 = (int)triProjected.v[0].y; t.z1 = triProjected.v[0].z; t.l1 = triProjected.lighting[0];
-                    t.x2 = (int)triProjected.v[1].x; t.y2 = (int)triProjected.v[1].y; t.z2 = triProjected.v[1].z; t.l2 = triProjected.lighting[1];
-                    t.x3 = (int)triProjected.v[2].x; t.y3 = (int)triProjected.v[2].y; t.z3 = triProjected.v[2].z; t.l3 = triProjected.lighting[2];
-                    t.color = finalColor;
-                }
+        }
+    }
+
+    /**
+     * Transforms, Clips, Lights and Projects all submitted meshes on the workers.
+     * Workers grab one mesh at a time and append the result to their own queue.
+     */
+    private void processGeometry() {
+        int meshCount = submittedMeshes.size();
+        if (meshWorker.length < meshCount) {
+            int newSize = Math.max(meshCount, meshWorker.length * 2);
+            meshWorker = Arrays.copyOf(meshWorker, newSize);
+            meshStart = Arrays.copyOf(meshStart, newSize);
+            meshEnd = Arrays.copyOf(meshEnd, newSize);
+        }
+
+        nextMeshIndex.set(0);
+        workers.run(WorkerPool.Phase.GEOMETRY, geometryJob);
+    }
+
+    /**
+     * A worker's share of the Geometry Stage.
+     */
+    private void runGeometryWorker(int workerIdx) {
+        GeometryWorker worker = geometryWorkers[workerIdx];
+        worker.reset();
+
+        int meshCount = submittedMeshes.size();
+        int meshIdx;
+        while ((meshIdx = nextMeshIndex.getAndIncrement()) < meshCount) {
+            meshWorker[meshIdx] = workerIdx;
+            meshStart[meshIdx] = worker.size();
+            Mesh mesh = submittedMeshes.get(meshIdx);
+            if (mesh != null) {
+                worker.processMesh(mesh, frameContext);
+            } else {
+                worker.processMesh(submittedIndexedMeshes.get(meshIdx), frameContext);
             }
+            meshEnd[meshIdx] = worker.size();
         }
     }
-    
-    // Note: endFrame() is removed as it was only for sorting.
-
-    /**
-     * Clips a triangle against a plane using reusable objects.
-     * populates 'clippedTrianglesOut' with 0, 1, or 2 triangles.
-     */
-    private void clipTriangleAgainstPlane(Vector3D planePoint, Vector3D planeNormal, Triangle inTri) {
-        clippedTrianglesOut.clear(); // Reset the list
-        planeNormal = planeNormal.normalize();
-        
-        // 1. Calculate distance of each point from the plane
-        // dist = (point - planePoint) . normal
-        double[] dist = new double[3];
-        int insideCount = 0;
-        int outsideCount = 0;
-        
-        for (int i = 0; i < 3; i++) {
-            dist[i] = inTri.v[i].subtract(planePoint).dotProduct(planeNormal);
-            if (dist[i] >= 0) insideCount++;
-            else outsideCount++;
+
+    /**
+     * Builds the frame's render queue from the per-worker queues, ordered by mesh submission.
+     */
+    private void mergeRenderQueues() {
+        int total = 0;
+        int culled = 0, small = 0;
+        for (GeometryWorker worker : geometryWorkers) {
+            total += worker.size();
+            culled += worker.getCulledCount();
+            small += worker.getSmallCount();
         }
-        
-        if (insideCount == 0) return; // All outside, return empty
-        if (insideCount == 3) {
-            clippedTrianglesOut.add(inTri); // All inside, return original
-            return;
+        culledTriangles = culled;
+        smallTriangles = small;
+        queuedTriangles = total;
+
+        if (renderQueue.length < total) {
+            renderQueue = new ProjectedTriangle[Math.max(total, renderQueue.length * 2)];
         }
-        
-        // 2. Classify and Reorder Vertices
-        Vector3D[] v = new Vector3D[]{ inTri.v[0], inTri.v[1], inTri.v[2] };
-        double[] d = new double[]{ dist[0], dist[1], dist[2] };
-        
-        if (insideCount == 1) {
-            // Cycle until v[0] is the inside point
-            while (d[0] < 0) {
-                Vector3D tv = v[0]; v[0] = v[1]; v[1] = v[2]; v[2] = tv;
-                double td = d[0]; d[0] = d[1]; d[1] = d[2]; d[2] = td;
-            }
-            
-            // Re-use triClipped1
-            // Vertices: Inside, Intersect(In->Out1), Intersect(In->Out2)
-            triClipped1.v[0].set(v[0]);
-            intersectPlane(planePoint, planeNormal, v[0], v[1], triClipped1.v[1]);
-            intersectPlane(planePoint, planeNormal, v[0], v[2], triClipped1.v[2]);
-            triClipped1.color = inTri.color;
-            
-            clippedTrianglesOut.add(triClipped1);
-            
-        } else if (insideCount == 2) {
-            // Cycle until v[2] is the outside point
-            while (d[2] >= 0) {
-                Vector3D tv = v[0]; v[0] = v[1]; v[1] = v[2]; v[2] = tv;
-                double td = d[0]; d[0] = d[1]; d[1] = d[2]; d[2] = td;
+
+        bufferCount = 0;
+        int meshCount = submittedMeshes.size();
+        for (int m = 0; m < meshCount; m++) {
+            GeometryWorker worker = geometryWorkers[meshWorker[m]];
+            for (int i = meshStart[m]; i < meshEnd[m]; i++) {
+                renderQueue[bufferCount++] = worker.get(i);
             }
-            
-            // Quad formed by 2 Triangles. Re-use triClipped1 and triClipped2.
-            
-            // Tri 1: In1, In2, Intersect(In2->Out)
-            triClipped1.v[0].set(v[0]);
-            triClipped1.v[1].set(v[1]);
-            intersectPlane(planePoint, planeNormal, v[1], v[2], triClipped1.v[2]);
-            triClipped1.color = inTri.color;
-            
-            // Tri 2: In1, Intersect(In2->Out), Intersect(In1->Out)
-            triClipped2.v[0].set(v[0]);
-            triClipped2.v[1].set(triClipped1.v[2]); // Reuse the point calculated above
-            intersectPlane(planePoint, planeNormal, v[0], v[2], triClipped2.v[2]);
-            triClipped2.color = inTri.color;
-            
-            clippedTrianglesOut.add(triClipped1);
-            clippedTrianglesOut.add(triClipped2);
         }
     }
-    
-    /**
-     * Calculates intersection and stores it in 'out'.
-     */
-    private void intersectPlane(Vector3D planeP, Vector3D planeN, Vector3D lineStart, Vector3D lineEnd, Vector3D out) {
-        planeN = planeN.normalize();
-        double planeD = -planeN.dotProduct(planeP);
-        double ad = lineStart.dotProduct(planeN);
-        double bd = lineEnd.dotProduct(planeN);
-        double t = (-planeD - ad) / (bd - ad);
-        Vector3D lineStartToEnd = lineEnd.subtract(lineStart);
-        Vector3D lineToIntersect = lineStartToEnd.multiply(t);
-        
-        out.set(lineStart);
-        out.addInPlace(lineToIntersect);
-    }}
+
+    /**
+     * Reorders the render queue from near to far with a counting sort over coarse depth buckets of each
+     * triangle's nearest vertex. O(n), and stable, so the result is deterministic.
+     */
+    private void sortFrontToBack() {
+        int count = bufferCount;
+        if (triangleBucket.length < count) {
+            triangleBucket = new int[Math.max(count, triangleBucket.length * 2)];
+        }
+        if (sortedQueue.length < renderQueue.length) {
+            sortedQueue = new ProjectedTriangle[renderQueue.length];
+        }
+
+        // 1. Histogram
+        Arrays.fill(bucketStart, 0);
+        for (int i = 0; i < count; i++) {
+            int bucket = depthBucket(renderQueue[i].nearZ);
+            triangleBucket[i] = bucket;
+            bucketStart[bucket + 1]++;
+        }
+
+        // 2. Prefix sum: first output slot of each bucket
+        for (int b = 0; b < DEPTH_BUCKETS; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+
+        // 3. Scatter
+        for (int i = 0; i < count; i++) {
+            sortedQueue[bucketStart[triangleBucket[i]]++] = renderQueue[i];
+        }
+
+        // Swap the buffers (no copy)
+        ProjectedTriangle[] sorted = sortedQueue;
+        sortedQueue = renderQueue;
+        renderQueue = sorted;
+    }
+
+    /**
+     * Maps a Z value (0 = near, 1 = far) to a bucket, 0 being the nearest.
+     */
+    private static int depthBucket(double z) {
+        double reversed = 1.0 - z;
+        if (reversed <= 0) return DEPTH_BUCKETS - 1; // At or beyond the far plane
+        int key = (int)(Double.doubleToRawLongBits(Math.min(reversed, 1.0)) >>> DEPTH_BUCKET_BITS);
+        return Math.min(NEAREST_BUCKET_KEY - key, DEPTH_BUCKETS - 1);
+    }
+
+    /**
+     * Numbers the triangles in their final render queue order (used by the Visibility Buffer).
+     */
+    private void assignTriangleIds() {
+        for (int i = 0; i < bufferCount; i++) {
+            renderQueue[i].id = i + 1; // 0 means "no triangle"
+        }
+    }
+
+    /**
+     * Sorts the render queue into per-tile bins using each triangle's screen bounding box.
+     */
+    private void binTriangles(int tileSize, int screenWidth, int screenHeight) {
+        tileBins.reset(tileSize, screenWidth, screenHeight);
+
+        for (int i = 0; i < bufferCount; i++) {
+            ProjectedTriangle t = renderQueue[i];
+
+            // Completely off-screen (Right or Bottom)? Left/Top are handled by the bins.
+            if (t.minX >= screenWidth || t.minY >= screenHeight) continue;
+
+            tileBins.add(i, t.minX, t.minY, t.maxX, t.maxY);
+        }
+    }
+
+    /**
+     * Fills {@link #tileSchedule} with every tile of the current bin grid: in {@link TileOrder},
+     * then (with cost-aware scheduling) stably reordered from the most to the least expensive tile.
+     * Also prepares {@link #tileCost} to receive this frame's measurements.
+     */
+    private void buildTileSchedule(int tileSize) {
+        int tilesX = tileBins.getTilesX();
+        int tilesY = tileBins.getTilesY();
+        int totalTiles = tileBins.getTileCount();
+        if (tileSchedule.length < totalTiles) {
+            tileSchedule = new int[totalTiles];
+            tileBaseOrder = new int[totalTiles];
+            scheduleKeys = new long[totalTiles];
+        }
+
+        // Last frame's measurements only mean something on the same grid
+        boolean measured = (tileSize == costTileSize && tilesX == costTilesX && tilesY == costTilesY);
+        if (!measured) {
+            if (tileCost.length < totalTiles) tileCost = new long[totalTiles];
+            costTileSize = tileSize;
+            costTilesX = tilesX;
+            costTilesY = tilesY;
+        }
+
+        // 1. Base order
+        boolean morton = (tileOrder == TileOrder.MORTON);
+        for (int i = 0; i < totalTiles; i++) {
+            long rank = morton ? mortonCode(i % tilesX, i / tilesX) : i;
+            scheduleKeys[i] = (rank << SCHEDULE_INDEX_BITS) | i;
+        }
+        Arrays.sort(scheduleKeys, 0, totalTiles);
+        for (int i = 0; i < totalTiles; i++) {
+            tileSchedule[i] = (int)(scheduleKeys[i] & SCHEDULE_INDEX_MASK);
+        }
+        if (!costAwareScheduling) return;
+
+        // 2. Heaviest first. The key holds the position in the base order (inverted, since the
+        // sort is ascending and we read it backwards), so equal costs keep the base order.
+        for (int i = 0; i < totalTiles; i++) {
+            int tile = tileSchedule[i];
+            long cost = measured ? tileCost[tile] : tileBins.count(tile);
+            scheduleKeys[i] = (Math.min(cost, MAX_TILE_COST) << SCHEDULE_INDEX_BITS) | (SCHEDULE_INDEX_MASK - i);
+        }
+        Arrays.sort(scheduleKeys, 0, totalTiles);
+
+        int[] baseOrder = tileBaseOrder;
+        System.arraycopy(tileSchedule, 0, baseOrder, 0, totalTiles);
+        for (int i = 0; i < totalTiles; i++) {
+            int position = (int)(SCHEDULE_INDEX_MASK - (scheduleKeys[totalTiles - 1 - i] & SCHEDULE_INDEX_MASK));
+            tileSchedule[i] = baseOrder[position];
+        }
+    }
+
+    /**
+     * Interleaves the bits of a tile's coordinates (Morton / Z-order code).
+     */
+    private static long mortonCode(int tx, int ty) {
+        long code = 0;
+        for (int bit = 0; bit < 16; bit++) {
+            code |= (long)((tx >> bit) & 1) << (2 * bit);
+            code |= (long)((ty >> bit) & 1) << (2 * bit + 1);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,84 @@
+package engine.core;
+
+import java.util.Arrays;
+
+/**
+ * Per-tile triangle lists ("Bins") for the Tile-Based Rasterizer.
+ * <p>
+ * Instead of every tile walking the whole render queue, each triangle is recorded
+ * only in the tiles that its screen-space bounding box touches.
+ * A tile worker then only walks its own (short) list.
+ * </p>
+ * The arrays are reused between frames to avoid Garbage Collection.
+ */
+public class TileBins {
+    private int tileSize;
+    private int tilesX;
+    private int tilesY;
+
+    // bins[tile] holds indices into the render queue, counts[tile] is the number of valid entries
+    private int[][] bins = new int[0][];
+    private int[] counts = new int[0];
+
+    public TileBins() {
+    }
+
+    /**
+     * Resizes the grid for the given tile and screen size and logically empties every bin.
+     */
+    public void reset(int tileSize, int screenWidth, int screenHeight) {
+        this.tileSize = tileSize;
+        tilesX = (screenWidth + tileSize - 1) / tileSize; // Ceiling division
+        tilesY = (screenHeight + tileSize - 1) / tileSize;
+        int totalTiles = tilesX * tilesY;
+
+        if (bins.length < totalTiles) {
+            int[][] grown = new int[totalTiles][];
+            System.arraycopy(bins, 0, grown, 0, bins.length);
+            for (int i = bins.length; i < totalTiles; i++) {
+                grown[i] = new int[64];
+            }
+            bins = grown;
+            counts = new int[totalTiles];
+        }
+        for (int i = 0; i < totalTiles; i++) {
+            counts[i] = 0;
+        }
+    }
+
+    /**
+     * Records a triangle in every tile overlapped by its (inclusive) pixel bounding box.
+     * Bounding boxes that are completely off-screen are ignored.
+     */
+    public void add(int triIndex, int minX, int minY, int maxX, int maxY) {
+        if (maxX < 0 || maxY < 0) return;
+
+        int tx0 = Math.max(minX, 0) / tileSize;
+        int ty0 = Math.max(minY, 0) / tileSize;
+        int tx1 = Math.min(maxX / tileSize, tilesX - 1);
+        int ty1 = Math.min(maxY / tileSize, tilesY - 1);
+
+        for (int ty = ty0; ty <= ty1; ty++) {
+            int row = ty * tilesX;
+            for (int tx = tx0; tx <= tx1; tx++) {
+                int tile = row + tx;
+                int[] bin = bins[tile];
+                int count = counts[tile];
+                if (count == bin.length) {
+                    bin = Arrays.copyOf(bin, count * 2);
+                    bins[tile] = bin;
+                }
+                bin[count] = triIndex;
+                counts[tile] = count + 1;
+            }
+        }
+    }
+
+    public int getTilesX() { return tilesX; }
+    public int getTilesY() { return tilesY; }
+    public int getTileCount() { return tilesX * tilesY; }
+
+    /** The render queue indices binned into a tile. Only the first {@link #count(int)} entries are valid. */
+    public int[] get(int tile) { return bins[tile]; }
+    public int count(int tile) { return counts[tile]; }
+}
@@ -0,0 +1,205 @@
+package engine.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Long-lived worker threads that run the parallel phases of a frame.
+ * <p>
+ * Submitting lambdas to an ExecutorService and waiting on a new CountDownLatch costs allocations and
+ * a full thread wake-up for every phase, which adds up at several hundred frames per second.
+ * Instead, the workers stay alive and wait on a reusable <b>Phased Barrier</b>:
+ * </p>
+ * <ul>
+ *     <li>The calling thread publishes a job and bumps the phase counter (a volatile write).</li>
+ *     <li>Waiting workers spin for a short while, so a phase that follows right after the previous one
+ *     is picked up within microseconds. Then they yield for a while, and only if nothing arrives do they park.</li>
+ *     <li>The calling thread takes part as worker 0, then spins (and eventually parks) until the
+ *     other workers have finished the phase.</li>
+ * </ul>
+ * Only one thread may run phases at a time. The workers are daemon threads, so they do not keep the JVM alive.
+ */
+public class WorkerPool {
+
+    /**
+     * The parallel phases of a frame, used to report where the frame time goes (see {@link #getPhaseNanos(Phase)}).
+     * The frame clear is fused into {@link #RASTER}, and binning runs on the calling thread between the phases.
+     */
+    public enum Phase { GEOMETRY, RASTER, RESOLVE }
+
+    /**
+     * Work done by every worker in a phase.
+     */
+    public interface Job {
+        /**
+         * @param workerIdx 0 for the calling thread, 1 to {@link #getThreadCount()} - 1 for the pool threads.
+         */
+        void run(int workerIdx);
+    }
+
+    // A waiting thread busy-waits for SPIN_LIMIT iterations, then yields its core until YIELD_LIMIT
+    // (so an oversubscribed machine still makes progress), then parks
+    private static final int SPIN_LIMIT = 200;
+    private static final int YIELD_LIMIT = 2_000;
+
+    private final int threadCount;
+    private final Thread[] threads;
+
+    // --- BARRIER STATE ---
+    // 'job' is written before the volatile 'phaseCounter' and read after it, so the workers always see it.
+    private Job job;
+    private volatile int phaseCounter = 0;
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicIntegerArray parked;     // 1 while worker i is parked (or about to park)
+    private volatile Thread caller;
+    private volatile boolean callerParked = false;
+    private volatile Throwable failure;
+    private volatile boolean shutdown = false;
+
+    // Wall time of the last run of each phase
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    /**
+     * Starts a pool with one worker per available processor (the calling thread counts as one).
+     */
+    public WorkerPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threadCount Total number of workers, including the calling thread. Must be at least 1.
+     */
+    public WorkerPool(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + threadCount);
+        }
+        this.threadCount = threadCount;
+        this.parked = new AtomicIntegerArray(threadCount);
+        this.threads = new Thread[threadCount];
+
+        for (int i = 1; i < threadCount; i++) {
+            final int workerIdx = i;
+            Thread thread = new Thread(() -> workerLoop(workerIdx), "Render-Worker-" + i);
+            thread.setDaemon(true);
+            threads[i] = thread;
+            thread.start();
+        }
+    }
+
+    /** Number of workers, including the calling thread. */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Runs a job on every worker (the calling thread included) and returns once all of them are done.
+     * If a worker throws, the first exception is rethrown here after the phase has finished.
+     */
+    public void run(Phase phase, Job job) {
+        if (shutdown) throw new IllegalStateException("WorkerPool has been shut down");
+        long start = System.nanoTime();
+
+        this.job = job;
+        this.caller = Thread.currentThread();
+        this.failure = null;
+        running.set(threadCount - 1);
+        phaseCounter++; // Publishes the job: the workers are released
+
+        // Wake the workers that gave up spinning
+        for (int i = 1; i < threadCount; i++) {
+            if (parked.get(i) == 1) LockSupport.unpark(threads[i]);
+        }
+
+        try {
+            job.run(0);
+        } catch (Throwable t) {
+            if (failure == null) failure = t;
+        }
+        awaitWorkers();
+        this.job = null;
+
+        phaseNanos[phase.ordinal()] = System.nanoTime() - start;
+
+        Throwable t = failure;
+        if (t != null) {
+            if (t instanceof RuntimeException) throw (RuntimeException)t;
+            if (t instanceof Error) throw (Error)t;
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Wall time (ns) the last run of a phase took, including the dispatch to the workers.
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Stops the worker threads. The pool cannot be used afterwards.
+     */
+    public void shutdown() {
+        shutdown = true;
+        phaseCounter++;
+        for (int i = 1; i < threadCount; i++) {
+            LockSupport.unpark(threads[i]);
+        }
+    }
+
+    // --- BARRIER ---
+
+    /**
+     * Waits until all pool threads have finished the current phase: spin first, then park.
+     */
+    private void awaitWorkers() {
+        for (int spin = 0; running.get() != 0; spin++) {
+            if (backOff(spin)) continue;
+            callerParked = true;
+            if (running.get() != 0) LockSupport.park(this);
+            callerParked = false;
+        }
+    }
+
+    /**
+     * One waiting step: spin or yield. Returns false once the thread should park instead.
+     */
+    private static boolean backOff(int spin) {
+        if (spin < SPIN_LIMIT) {
+            Thread.onSpinWait();
+            return true;
+        }
+        if (spin < YIELD_LIMIT) {
+            Thread.yield();
+            return true;
+        }
+        return false;
+    }
+
+    private void workerLoop(int workerIdx) {
+        int seenPhase = 0;
+        while (true) {
+            // 1. Wait for the next phase: spin first, then park
+            for (int spin = 0; phaseCounter == seenPhase; spin++) {
+                if (backOff(spin)) continue;
+                parked.set(workerIdx, 1);
+                if (phaseCounter == seenPhase) LockSupport.park(this);
+                parked.set(workerIdx, 0);
+            }
+            seenPhase = phaseCounter;
+            if (shutdown) return;
+
+            // 2. Run it
+            try {
+                job.run(workerIdx);
+            } catch (Throwable t) {
+                if (failure == null) failure = t;
+            } finally {
+                // 3. The last worker to finish wakes the caller if it is parked
+                if (running.decrementAndGet() == 0 && callerParked) {
+                    LockSupport.unpark(caller);
+                }
+            }
+        }
+    }
+}
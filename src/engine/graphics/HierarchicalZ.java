@@ -0,0 +1,106 @@
+package engine.graphics;
+
+/**
+ * Hierarchical Z (Hi-Z) for the screen tile a worker is currently rasterizing.
+ * <p>
+ * The {@link Screen} keeps the farthest depth of every 8x8 block. This class adds the tile level
+ * on top (the farthest depth of the whole tile) and decides when the block values are refreshed.
+ * A triangle whose nearest depth is behind the farthest depth of everything it could touch is
+ * completely hidden and is skipped before any scan conversion.
+ * </p>
+ * <p>
+ * Depth only gets nearer during a frame, so a block value that has not been refreshed yet is still
+ * a valid (conservative) upper bound. We therefore only mark the blocks a triangle touched as dirty,
+ * and refresh them every {@link #REFRESH_INTERVAL} triangles instead of after every write.
+ * </p>
+ * One instance per worker thread. A tile (and all its blocks) is only touched by one worker at a time.
+ */
+public class HierarchicalZ {
+    // Number of triangles drawn into a tile between two refreshes of its dirty blocks
+    private static final int REFRESH_INTERVAL = 16;
+
+    private final Screen screen;
+
+    // Current tile (pixels: [minX, maxX) x [minY, maxY), blocks: inclusive)
+    private TileBuffer tile;
+    private int minX, maxX, minY, maxY;
+    private int blockX0, blockY0, blockX1, blockY1;
+
+    private double tileFarZ;
+    private int drawnSinceRefresh;
+
+    public HierarchicalZ(Screen screen) {
+        this.screen = screen;
+    }
+
+    /**
+     * Starts rasterizing a new tile, whose depth lives in the given (bound) tile buffer.
+     * Tiles must be aligned to the 8x8 block grid.
+     */
+    public void beginTile(TileBuffer tile) {
+        this.tile = tile;
+        this.minX = tile.minX;
+        this.maxX = tile.maxX;
+        this.minY = tile.minY;
+        this.maxY = tile.maxY;
+        blockX0 = minX / Screen.HIZ_BLOCK_SIZE;
+        blockY0 = minY / Screen.HIZ_BLOCK_SIZE;
+        blockX1 = (maxX - 1) / Screen.HIZ_BLOCK_SIZE;
+        blockY1 = (maxY - 1) / Screen.HIZ_BLOCK_SIZE;
+        refresh();
+    }
+
+    /**
+     * Coarse visibility test: true if the triangle is certainly hidden inside the current tile.
+     * Checks the tile first, then every block under the triangle's bounding box.
+     */
+    public boolean isOccluded(ProjectedTriangle t) {
+        double nearZ = t.nearZ;
+        if (nearZ >= tileFarZ) return true;
+
+        int bx0 = Math.max(minX, t.minX) / Screen.HIZ_BLOCK_SIZE;
+        int by0 = Math.max(minY, t.minY) / Screen.HIZ_BLOCK_SIZE;
+        int bx1 = Math.min(maxX - 1, t.maxX) / Screen.HIZ_BLOCK_SIZE;
+        int by1 = Math.min(maxY - 1, t.maxY) / Screen.HIZ_BLOCK_SIZE;
+        if (bx0 > bx1 || by0 > by1) return false; // Not in this tile, the rasterizer rejects it anyway
+
+        int blocksX = screen.getHiZBlocksX();
+        for (int by = by0; by <= by1; by++) {
+            for (int bx = bx0; bx <= bx1; bx++) {
+                if (nearZ < screen.getBlockFarZ(by * blocksX + bx)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that a triangle was rasterized into the current tile.
+     * The blocks under its bounding box may have gotten nearer and are refreshed later.
+     */
+    public void markDrawn(ProjectedTriangle t) {
+        int bx0 = Math.max(minX, t.minX) / Screen.HIZ_BLOCK_SIZE;
+        int by0 = Math.max(minY, t.minY) / Screen.HIZ_BLOCK_SIZE;
+        int bx1 = Math.min(maxX - 1, t.maxX) / Screen.HIZ_BLOCK_SIZE;
+        int by1 = Math.min(maxY - 1, t.maxY) / Screen.HIZ_BLOCK_SIZE;
+        screen.markBlocksDirty(bx0, by0, bx1, by1);
+
+        if (++drawnSinceRefresh >= REFRESH_INTERVAL) {
+            refresh();
+        }
+    }
+
+    /**
+     * Recomputes the dirty blocks of the tile and the farthest depth of the whole tile.
+     */
+    private void refresh() {
+        int blocksX = screen.getHiZBlocksX();
+        double far = 0;
+        for (int by = blockY0; by <= blockY1; by++) {
+            for (int bx = blockX0; bx <= blockX1; bx++) {
+                far = Math.max(far, screen.refreshBlockFarZ(tile, by * blocksX + bx));
+            }
+        }
+        tileFarZ = far;
+        drawnSinceRefresh = 0;
+    }
+}
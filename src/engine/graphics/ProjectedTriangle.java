@@ -2,12 +2,205 @@ package engine.graphics;
 
 /**
  * A simple data structure to hold a triangle that is ready to be drawn.
- * Contains Screen-Space coordinates (Integers), Depth (Doubles), and Lighting info.
+ * Contains Screen-Space coordinates (28.4 Fixed Point), Depth (Doubles), and Lighting info.
  * Used for buffering the render queue.
+ * <p>
+ * After the raw vertices are written, {@link #setup()} must be called once.
+ * It caches everything the rasterizers need (sorted vertices, bounding box, edge functions, planes),
+ * so tile workers do not recompute it for every tile the triangle touches.
+ * </p>
+ * <p>
+ * <b>Sub-Pixel Precision:</b> vertex positions keep 4 fractional bits (1/16th of a pixel), see {@link #toSubpixel(double)}.
+ * Pixel (px, py) is sampled at its center (px + 0.5, py + 0.5), and both rasterizers apply the
+ * <b>Top-Left Rule</b>: a pixel center exactly on an edge belongs to the triangle only if that edge is a
+ * top edge (horizontal, interior below) or a left edge. Two triangles sharing an edge therefore never
+ * both draw, and never both skip, a pixel along it.
+ * </p>
  */
 public class ProjectedTriangle {
-    public int x1, y1, x2, y2, x3, y3;
+    // Fractional bits of the vertex coordinates (28.4 Fixed Point)
+    public static final int SUBPIXEL_BITS = 4;
+    public static final int SUBPIXEL_ONE = 1 << SUBPIXEL_BITS;
+    private static final int SUBPIXEL_HALF = SUBPIXEL_ONE / 2;
+
+    // Coordinates are clamped to +-2^24 pixels, so the 64-bit edge functions can never overflow
+    private static final double SUBPIXEL_LIMIT = (double)(1 << 28);
+
+    // Triangles whose bounding box is at most this many pixels wide and high take the small-triangle path
+    public static final int SMALL_SIZE = 2;
+
+    public int x1, y1, x2, y2, x3, y3; // 28.4 Fixed Point
     public double z1, z2, z3;
     public double l1, l2, l3;
     public int color;
+
+    // Visibility Buffer ID: 1 + index in the frame's render queue (set by the Renderer, 0 = no triangle)
+    public int id;
+
+    // --- TRIANGLE SETUP (filled by setup()) ---
+    // Vertices sorted by Y (28.4 Fixed Point): top (min Y), middle, bottom (max Y)
+    public int topX, topY, midX, midY, botX, botY;
+
+    // True if the short edges (12, 23) are on the left side of the long edge (13)
+    public boolean shortEdgesLeft;
+
+    // Bounding Box of the covered pixels (inclusive). Empty (min > max) if no pixel center can be covered.
+    public int minX, maxX, minY, maxY;
+
+    // Nearest vertex depth (used by the Hierarchical Z occlusion test)
+    public double nearZ;
+
+    // Edge Functions for the Half-Space Rasterizer, in 28.4 units: E(X, Y) = A * X + B * Y + C.
+    // A pixel center is inside when all three are >= 0. The winding is normalized and the
+    // Top-Left Rule is folded into C (edges that are not top/left are biased by -1).
+    public long edgeA0, edgeB0, edgeC0, edgeA1, edgeB1, edgeC1, edgeA2, edgeB2, edgeC2;
+    public boolean degenerate; // Zero area: covers no pixels
+
+    // --- SMALL TRIANGLES ---
+    // Set when the bounding box is at most SMALL_SIZE x SMALL_SIZE pixels. The exact coverage is then
+    // precomputed here, bit (dy * SMALL_SIZE + dx) standing for pixel (minX + dx, minY + dy),
+    // and the rasterizers just plot those pixels instead of walking edges.
+    public boolean small;
+    public int coverageMask;
+
+    // Plane Equations (in pixels): value(x, y) = C + dX * x + dY * y
+    public double zPlaneC, zPlaneDx, zPlaneDy;
+    public double lPlaneC, lPlaneDx, lPlaneDy;
+
+    /**
+     * Converts a Screen-Space coordinate (in pixels) to 28.4 Fixed Point, rounding to the nearest 1/16th.
+     */
+    public static int toSubpixel(double v) {
+        double scaled = Math.floor(v * SUBPIXEL_ONE + 0.5);
+        if (scaled > SUBPIXEL_LIMIT) return (int)SUBPIXEL_LIMIT;
+        if (scaled < -SUBPIXEL_LIMIT) return (int)-SUBPIXEL_LIMIT;
+        return (int)scaled;
+    }
+
+    /**
+     * Triangle Setup: sorts the vertices by Y and precomputes the bounding box,
+     * edge functions and depth/lighting plane equations.
+     * Call this once after the raw vertex fields have been written.
+     */
+    public void setup() {
+        // 1. Sort Vertices by Y (Top to Bottom) using a simple swap bubble-sort
+        int ax = x1, ay = y1, bx = x2, by = y2, cx = x3, cy = y3;
+
+        if (ay > by) {
+            int ti = ax; ax = bx; bx = ti;
+            int ty = ay; ay = by; by = ty;
+        }
+        if (ay > cy) {
+            int ti = ax; ax = cx; cx = ti;
+            int ty = ay; ay = cy; cy = ty;
+        }
+        if (by > cy) {
+            int ti = bx; bx = cx; cx = ti;
+            int ty = by; by = cy; cy = ty;
+        }
+
+        topX = ax; topY = ay;
+        midX = bx; midY = by;
+        botX = cx; botY = cy;
+
+        // 2. Which side of the long edge the middle vertex is on
+        long cross = ((long)bx - ax) * ((long)cy - ay) - ((long)by - ay) * ((long)cx - ax);
+        shortEdgesLeft = cross < 0;
+
+        // 3. Bounding Box: the pixels whose centers can be inside the triangle
+        int minXf = Math.min(ax, Math.min(bx, cx));
+        int maxXf = Math.max(ax, Math.max(bx, cx));
+        minX = Math.floorDiv(minXf - SUBPIXEL_HALF + SUBPIXEL_ONE - 1, SUBPIXEL_ONE);
+        maxX = Math.floorDiv(maxXf - SUBPIXEL_HALF, SUBPIXEL_ONE);
+        minY = Math.floorDiv(ay - SUBPIXEL_HALF + SUBPIXEL_ONE - 1, SUBPIXEL_ONE);
+        maxY = Math.floorDiv(cy - SUBPIXEL_HALF, SUBPIXEL_ONE);
+        nearZ = Math.min(z1, Math.min(z2, z3));
+
+        // 4. Edge Functions and Plane Equations
+        long area = ((long)x2 - x1) * ((long)y3 - y1) - ((long)x3 - x1) * ((long)y2 - y1);
+        degenerate = (area == 0);
+        small = false;
+        coverageMask = 0;
+        if (degenerate) {
+            // Flat planes, so anything that shades from the plane equations still gets sensible values
+            zPlaneDx = 0; zPlaneDy = 0; zPlaneC = (z1 + z2 + z3) / 3.0;
+            lPlaneDx = 0; lPlaneDy = 0; lPlaneC = (l1 + l2 + l3) / 3.0;
+            return;
+        }
+
+        // Each edge i -> j gets A = (yi - yj), B = (xj - xi), anchored at vertex i.
+        // Flip all edges if needed so that the interior is positive.
+        long sign = area > 0 ? 1 : -1;
+        setupEdge(0, sign * ((long)y1 - y2), sign * ((long)x2 - x1), x1, y1);
+        setupEdge(1, sign * ((long)y2 - y3), sign * ((long)x3 - x2), x2, y2);
+        setupEdge(2, sign * ((long)y3 - y1), sign * ((long)x1 - x3), x3, y3);
+
+        // Plane equations in pixel units
+        double px1 = (double)x1 / SUBPIXEL_ONE, py1 = (double)y1 / SUBPIXEL_ONE;
+        double px2 = (double)x2 / SUBPIXEL_ONE, py2 = (double)y2 / SUBPIXEL_ONE;
+        double px3 = (double)x3 / SUBPIXEL_ONE, py3 = (double)y3 / SUBPIXEL_ONE;
+        double invArea = 1.0 / ((px2 - px1) * (py3 - py1) - (px3 - px1) * (py2 - py1));
+
+        zPlaneDx = ((z2 - z1) * (py3 - py1) - (z3 - z1) * (py2 - py1)) * invArea;
+        zPlaneDy = ((z3 - z1) * (px2 - px1) - (z2 - z1) * (px3 - px1)) * invArea;
+        zPlaneC = z1 - zPlaneDx * px1 - zPlaneDy * py1;
+
+        lPlaneDx = ((l2 - l1) * (py3 - py1) - (l3 - l1) * (py2 - py1)) * invArea;
+        lPlaneDy = ((l3 - l1) * (px2 - px1) - (l2 - l1) * (px3 - px1)) * invArea;
+        lPlaneC = l1 - lPlaneDx * px1 - lPlaneDy * py1;
+
+        // 5. Small Triangles: test the few pixel centers right away
+        if (maxX - minX < SMALL_SIZE && maxY - minY < SMALL_SIZE) {
+            small = true;
+            for (int py = minY; py <= maxY; py++) {
+                for (int px = minX; px <= maxX; px++) {
+                    if (covers(px, py)) coverageMask |= 1 << ((py - minY) * SMALL_SIZE + (px - minX));
+                }
+            }
+        }
+    }
+
+    /**
+     * True if the triangle cannot cover any pixel: zero area, no pixel center inside the bounding box,
+     * or a small triangle that turned out to miss all of its pixel centers.
+     * Such triangles can be dropped before they reach the render queue.
+     */
+    public boolean coversNoPixels() {
+        return degenerate || minX > maxX || minY > maxY || (small && coverageMask == 0);
+    }
+
+    /**
+     * True if the centers of all pixels in [x0, x1] x [y0, y1] (inclusive) are inside the triangle.
+     * Edge functions are linear, so it is enough to test the four corner pixels.
+     */
+    public boolean coversRect(int x0, int x1, int y0, int y1) {
+        return !degenerate && covers(x0, y0) && covers(x1, y0) && covers(x0, y1) && covers(x1, y1);
+    }
+
+    /**
+     * Exact coverage test of the center of pixel (px, py), following the Top-Left Rule.
+     */
+    private boolean covers(int px, int py) {
+        long cx = ((long)px << SUBPIXEL_BITS) + SUBPIXEL_HALF;
+        long cy = ((long)py << SUBPIXEL_BITS) + SUBPIXEL_HALF;
+        return edgeA0 * cx + edgeB0 * cy + edgeC0 >= 0
+            && edgeA1 * cx + edgeB1 * cy + edgeC1 >= 0
+            && edgeA2 * cx + edgeB2 * cy + edgeC2 >= 0;
+    }
+
+    /**
+     * Stores edge 'i' as E(X, Y) = A * (X - xi) + B * (Y - yi), with the Top-Left Rule bias folded in.
+     */
+    private void setupEdge(int i, long a, long b, int xi, int yi) {
+        // With Y pointing down and the interior on the positive side:
+        // a Left edge has A > 0, a Top edge is horizontal (A == 0) with the interior below (B > 0).
+        boolean topLeft = a > 0 || (a == 0 && b > 0);
+        long c = -(a * xi + b * yi) - (topLeft ? 0 : 1);
+
+        switch (i) {
+            case 0: edgeA0 = a; edgeB0 = b; edgeC0 = c; break;
+            case 1: edgeA1 = a; edgeB1 = b; edgeC1 = c; break;
+            default: edgeA2 = a; edgeB2 = b; edgeC2 = c; break;
+        }
+    }
 }
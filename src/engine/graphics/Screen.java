@@ -4,6 +4,9 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.util.Arrays;
 
 /**
@@ -19,19 +22,151 @@ public class Screen {
     private int height;
     private BufferedImage image;
     private int[] pixels;
-    private double[] zBuffer; // Depth Buffer
     private Graphics2D g;
 
+    // Layout of the color buffer (same as TYPE_INT_RGB), used to wrap a reused array in a new image
+    private static final int[] RGB_MASKS = { 0xFF0000, 0x00FF00, 0x0000FF };
+    private static final DirectColorModel RGB_MODEL = new DirectColorModel(24, RGB_MASKS[0], RGB_MASKS[1], RGB_MASKS[2]);
+
+    /**
+     * Storage format of the Depth Buffer.
+     * <ul>
+     *     <li><b>DOUBLE</b>: 8 bytes per pixel, stores Z as-is (smaller = nearer). The default.</li>
+     *     <li><b>FLOAT</b>: 4 bytes per pixel, stores Z as-is (smaller = nearer).</li>
+     *     <li><b>FIXED24</b>: 4 bytes per pixel, stores a 24-bit fixed-point Reversed-Z (1 - Z, larger = nearer).
+     *     Cleared to 0, and anything beyond the far plane (Z > 1) fails the depth test.</li>
+     * </ul>
+     * FLOAT and FIXED24 halve the memory traffic of the depth test.
+     * Depth is interpolated along each span in the selected format.
+     */
+    public enum DepthFormat { DOUBLE, FLOAT, FIXED24 }
+
+    /**
+     * What the Pixel Loop does for a {@link TileBuffer} (see {@link TileBuffer#setPass(PixelPass)}).
+     * <ul>
+     *     <li><b>SHADE</b>: Nearer pixels win, write depth and color. The normal single pass.</li>
+     *     <li><b>DEPTH_ONLY</b>: Nearer pixels win, write depth only (no lighting). Pass 1 of the Depth Pre-Pass.</li>
+     *     <li><b>EQUAL</b>: Shade only the pixels whose depth is equal to the stored depth, without writing depth.
+     *     Pass 2 of the Depth Pre-Pass: every pixel is shaded once, by the triangle that won pass 1.</li>
+     * </ul>
+     */
+    public enum PixelPass { SHADE, DEPTH_ONLY, EQUAL }
+
+    // Depth Buffer: only the array matching 'depthFormat' is allocated
+    private DepthFormat depthFormat = DepthFormat.DOUBLE;
+    private double[] zBuffer;
+    private float[] zBufferFloat;
+    private int[] zBufferFixed;
+
+    // Visibility Buffer: triangle ID per pixel (see resolveVisibility), only allocated when used
+    private int[] triangleIds;
+
+    // The full-screen arrays seen as one big tile, used when drawing straight to the screen
+    private final TileBuffer screenTarget = new TileBuffer();
+
+    // FIXED24 depth is stepped as 24.7 fixed point, which still fits in a positive int
+    static final int DEPTH_FRACTION_BITS = 7;
+    static final int DEPTH_MAX = 0xFFFFFF;
+    private static final double DEPTH_FIXED_SCALE = (double)DEPTH_MAX * (1 << DEPTH_FRACTION_BITS);
+
+    // --- FIXED-POINT INTERPOLATION ---
+    // Lighting stepped as 16.16 fixed point: integer adds per pixel, and color packed with shifts
+    // instead of three double -> int conversions. (For integer depth stepping, use DepthFormat.FIXED24.)
+    static final int LIGHT_FRACTION_BITS = 16;
+    private boolean fixedPointInterpolation = false;
+
+    // Block size used by the Half-Space Rasterizer for trivial accept/reject
+    private static final int BLOCK_SIZE = 8;
+
+    // --- HIERARCHICAL Z ---
+    // Farthest depth of every 8x8 block, as a Z value (0 = near, 1 = far) whatever the DepthFormat.
+    // A block is only recomputed when it is marked dirty and someone asks for it (see HierarchicalZ),
+    // in between the stored value is an upper bound because depth only gets nearer during a frame.
+    static final int HIZ_BLOCK_SIZE = BLOCK_SIZE;
+    private int hiZBlocksX;
+    private int hiZBlockCount;
+    private double[] blockFarZ;
+    private boolean[] blockDirty;
+
+    // --- LAZY DEPTH CLEAR ---
+    // Instead of clearing the Depth Buffer every frame, every 8x8 block remembers the "generation" (frame)
+    // its depth was written in. A block with an old generation counts as infinitely far and is only
+    // cleared when a span touches it for the first time, so sky-only blocks cost nothing.
+    private boolean lazyDepthClear = false;
+    private int depthGeneration = 1;
+    private int[] blockGeneration;
+
+    // --- SIMD PIXEL LOOP ---
+    // Selected once at startup. The Vector API path is used when the 'jdk.incubator.vector' module
+    // is present (run with --add-modules jdk.incubator.vector) and not disabled with -Dengine.simd=false.
+    // Otherwise we fall back to the scalar loop.
+    private static final boolean SIMD_AVAILABLE = detectSimd();
+
     /**
      * Initializes the Screen with a specific width and height.
      */
     public Screen(int width, int height) {
+        resize(width, height);
+    }
+
+    /**
+     * Changes the resolution of the screen in place.
+     * <p>
+     * The color, depth, Hi-Z and Visibility Buffer arrays are only reallocated when they are too small
+     * for the new size, so shrinking (or going back to a size used before) allocates nothing large.
+     * A new {@link BufferedImage} is wrapped around the color array, so callers must fetch
+     * {@link #getImage()} again. The contents are undefined until the next frame has been drawn.
+     * Must not be called while a frame is being rasterized.
+     * </p>
+     */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Screen size must be positive: " + width + "x" + height);
+        }
         this.width = width;
         this.height = height;
-        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
-        this.zBuffer = new double[width * height]; // Allocate Z-Buffer
-        this.g = this.image.createGraphics();
+        allocateImage();
+        allocateZBuffer(); // Allocate Z-Buffer
+        allocateHiZ();
+        if (triangleIds != null && triangleIds.length < width * height) triangleIds = new int[width * height];
+    }
+
+    private void allocateImage() {
+        int size = width * height;
+        if (pixels == null || pixels.length < size) pixels = new int[size];
+
+        // The image only sees the first width * height entries of the array
+        DataBufferInt buffer = new DataBufferInt(pixels, size);
+        WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width, RGB_MASKS, null);
+        image = new BufferedImage(RGB_MODEL, raster, false, null);
+
+        if (g != null) g.dispose();
+        g = image.createGraphics();
+    }
+
+    /**
+     * Checks whether the Vector API pixel loop can be used on this JVM.
+     * Any failure to load it (module missing, unsupported platform) simply selects the scalar loop.
+     */
+    private static boolean detectSimd() {
+        if (!Boolean.parseBoolean(System.getProperty("engine.simd", "true"))) return false;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return false;
+        try {
+            Class.forName("engine.graphics.VectorSpans"); // Runs the species lookup
+            return VectorSpans.DOUBLE_LANES > 1;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /** True if the pixel loop runs on the Vector API (SIMD) instead of one pixel at a time. */
+    public static boolean isSimdAvailable() {
+        return SIMD_AVAILABLE;
+    }
+
+    /** Width of the SIMD registers used by the pixel loop, in bits (0 for the scalar fallback). */
+    public static int getSimdBits() {
+        return SIMD_AVAILABLE ? VectorSpans.VECTOR_BITS : 0;
     }
 
     /**
@@ -44,6 +179,157 @@ public class Screen {
     public int getWidth() { return width; }
     public int getHeight() { return height; }
 
+    /**
+     * Switches the Depth Buffer format. The new buffer must be cleared before use.
+     * Must not be called while a frame is being rasterized.
+     */
+    public void setDepthFormat(DepthFormat depthFormat) {
+        if (this.depthFormat == depthFormat) return;
+        this.depthFormat = depthFormat;
+        allocateZBuffer();
+    }
+
+    public DepthFormat getDepthFormat() { return depthFormat; }
+
+    private void allocateZBuffer() {
+        // Keep the array of the active format if it is large enough, drop the others
+        int size = width * height;
+        switch (depthFormat) {
+            case FLOAT:
+                if (zBufferFloat == null || zBufferFloat.length < size) zBufferFloat = new float[size];
+                zBuffer = null;
+                zBufferFixed = null;
+                break;
+            case FIXED24:
+                if (zBufferFixed == null || zBufferFixed.length < size) zBufferFixed = new int[size];
+                zBuffer = null;
+                zBufferFloat = null;
+                break;
+            default:
+                if (zBuffer == null || zBuffer.length < size) zBuffer = new double[size];
+                zBufferFloat = null;
+                zBufferFixed = null;
+                break;
+        }
+
+        screenTarget.setArea(0, width, 0, height, width);
+        screenTarget.pixels = pixels;
+        screenTarget.zBuffer = zBuffer;
+        screenTarget.zBufferFloat = zBufferFloat;
+        screenTarget.zBufferFixed = zBufferFixed;
+    }
+
+    // --- TILE BUFFERS ---
+
+    /** Copies the area of a tile buffer from the screen arrays into the tile buffer. */
+    void readTile(TileBuffer tile) {
+        copyTile(tile, true);
+    }
+
+    /** Copies a finished tile buffer back into the screen arrays. */
+    void writeTile(TileBuffer tile) {
+        copyTile(tile, false);
+    }
+
+    private void copyTile(TileBuffer tile, boolean read) {
+        int rowLength = tile.maxX - tile.minX;
+        for (int y = tile.minY; y < tile.maxY; y++) {
+            int screenIdx = y * width + tile.minX;
+            int tileIdx = tile.index(tile.minX, y);
+            if (tile.visibility) {
+                copyRow(triangleIds, screenIdx, tile.triangleIds, tileIdx, rowLength, read);
+            } else {
+                copyRow(pixels, screenIdx, tile.pixels, tileIdx, rowLength, read);
+            }
+
+            if (!lazyDepthClear) {
+                copyDepthRow(tile, screenIdx, tileIdx, rowLength, read);
+                continue;
+            }
+
+            // Lazy Depth Clear: only copy the runs of blocks that hold this frame's depth
+            int row = (y / HIZ_BLOCK_SIZE) * hiZBlocksX;
+            int x = tile.minX;
+            while (x < tile.maxX) {
+                if (blockGeneration[row + x / HIZ_BLOCK_SIZE] != depthGeneration) {
+                    x += HIZ_BLOCK_SIZE;
+                    continue;
+                }
+                int runStart = x;
+                while (x < tile.maxX && blockGeneration[row + x / HIZ_BLOCK_SIZE] == depthGeneration) {
+                    x += HIZ_BLOCK_SIZE;
+                }
+                int runEnd = Math.min(x, tile.maxX);
+                copyDepthRow(tile, screenIdx + (runStart - tile.minX), tileIdx + (runStart - tile.minX), runEnd - runStart, read);
+            }
+        }
+    }
+
+    private void copyDepthRow(TileBuffer tile, int screenIdx, int tileIdx, int length, boolean read) {
+        switch (depthFormat) {
+            case FLOAT: copyRow(zBufferFloat, screenIdx, tile.zBufferFloat, tileIdx, length, read); break;
+            case FIXED24: copyRow(zBufferFixed, screenIdx, tile.zBufferFixed, tileIdx, length, read); break;
+            default: copyRow(zBuffer, screenIdx, tile.zBuffer, tileIdx, length, read); break;
+        }
+    }
+
+    /**
+     * Fused frame clear for one tile: fills [minX, maxX) x [minY, maxY) of 'target' with the sky gradient
+     * and far depth, and resets the Hierarchical Z blocks of that area.
+     */
+    void clearArea(TileBuffer target, int minX, int maxX, int minY, int maxY, int topColor, int bottomColor) {
+        int rowLength = maxX - minX;
+        for (int y = minY; y < maxY; y++) {
+            int idx = target.index(minX, y);
+            if (target.visibility) {
+                Arrays.fill(target.triangleIds, idx, idx + rowLength, 0); // The sky is drawn by the resolve
+            } else {
+                Arrays.fill(target.pixels, idx, idx + rowLength, skyColor(y, topColor, bottomColor));
+            }
+            if (!lazyDepthClear) clearDepth(target, idx, rowLength); // Lazy: cleared on first use instead
+        }
+
+        int bx0 = minX / HIZ_BLOCK_SIZE, bx1 = (maxX - 1) / HIZ_BLOCK_SIZE;
+        for (int by = minY / HIZ_BLOCK_SIZE; by <= (maxY - 1) / HIZ_BLOCK_SIZE; by++) {
+            int row = by * hiZBlocksX;
+            Arrays.fill(blockFarZ, row + bx0, row + bx1 + 1, Double.MAX_VALUE);
+            Arrays.fill(blockDirty, row + bx0, row + bx1 + 1, false);
+        }
+    }
+
+    /**
+     * Clears one tile of the screen to the sky gradient (see {@link #drawSky(int, int)}) and resets its depth.
+     * Together these tiles replace a full-screen {@link #drawSky(int, int)} + {@link #clearZBuffer()},
+     * so the clear can run in parallel, right before each tile is drawn.
+     */
+    public void clearTile(int minX, int maxX, int minY, int maxY, int topColor, int bottomColor) {
+        clearArea(screenTarget, minX, maxX, minY, maxY, topColor, bottomColor);
+    }
+
+    private static void copyRow(Object screenArray, int screenIdx, Object tileArray, int tileIdx, int length, boolean read) {
+        if (read) {
+            System.arraycopy(screenArray, screenIdx, tileArray, tileIdx, length);
+        } else {
+            System.arraycopy(tileArray, tileIdx, screenArray, screenIdx, length);
+        }
+    }
+
+    private void allocateHiZ() {
+        hiZBlocksX = (width + HIZ_BLOCK_SIZE - 1) / HIZ_BLOCK_SIZE;
+        int blocksY = (height + HIZ_BLOCK_SIZE - 1) / HIZ_BLOCK_SIZE;
+        hiZBlockCount = hiZBlocksX * blocksY;
+        if (blockFarZ == null || blockFarZ.length < hiZBlockCount) {
+            blockFarZ = new double[hiZBlockCount];
+            blockDirty = new boolean[hiZBlockCount];
+            blockGeneration = new int[hiZBlockCount]; // Generation 0 is never current
+        } else {
+            // The blocks map to different pixels now, so nothing stored in them is valid
+            Arrays.fill(blockGeneration, 0, hiZBlockCount, 0);
+        }
+        Arrays.fill(blockFarZ, 0, hiZBlockCount, Double.MAX_VALUE);
+        Arrays.fill(blockDirty, 0, hiZBlockCount, false);
+    }
+
     /**
      * Clears the screen color.
      */
@@ -57,7 +343,169 @@ public class Screen {
      * Must be called at the start of every frame.
      */
     public void clearZBuffer() {
-        Arrays.fill(zBuffer, Double.MAX_VALUE);
+        if (lazyDepthClear) {
+            // Every block becomes stale, nothing is written
+            if (++depthGeneration == 0) {
+                Arrays.fill(blockGeneration, 0); // Wrapped around after 2^32 frames
+                depthGeneration = 1;
+            }
+        } else {
+            int size = width * height;
+            switch (depthFormat) {
+                case FLOAT: Arrays.fill(zBufferFloat, 0, size, Float.MAX_VALUE); break;
+                case FIXED24: Arrays.fill(zBufferFixed, 0, size, 0); break; // Reversed-Z: 0 is the far plane
+                default: Arrays.fill(zBuffer, 0, size, Double.MAX_VALUE); break;
+            }
+        }
+        // Cleared blocks are "infinitely" far in every format
+        Arrays.fill(blockFarZ, 0, hiZBlockCount, Double.MAX_VALUE);
+        Arrays.fill(blockDirty, 0, hiZBlockCount, false);
+    }
+
+    /**
+     * Selects how the scalar Pixel Loop steps Lighting across a span: as doubles (the default, and the
+     * reference for the image) or as 16.16 fixed-point integers. The SIMD loop always uses fixed point.
+     * Applies to every pass: the forward pass, pass 2 of the Depth Pre-Pass and the Visibility Buffer resolve.
+     */
+    public void setFixedPointInterpolation(boolean fixedPointInterpolation) {
+        this.fixedPointInterpolation = fixedPointInterpolation;
+    }
+
+    public boolean isFixedPointInterpolation() { return fixedPointInterpolation; }
+
+    /**
+     * Converts a Lighting value to 16.16 fixed point.
+     */
+    static int toFixedLight(double l) {
+        return (int)Math.round(l * (1 << LIGHT_FRACTION_BITS));
+    }
+
+    /**
+     * Applies 16.16 fixed-point lighting to a base color (0xRRGGBB) using only integer multiplies and shifts.
+     */
+    private static int shadeFixedPoint(int rBase, int gBase, int bBase, int light) {
+        return (((rBase * light) >> LIGHT_FRACTION_BITS) << 16)
+             | (((gBase * light) >> LIGHT_FRACTION_BITS) << 8)
+             | ((bBase * light) >> LIGHT_FRACTION_BITS);
+    }
+
+    /**
+     * Enables the Lazy Depth Clear: {@link #clearZBuffer()} only starts a new depth generation,
+     * and each 8x8 block of the Depth Buffer is cleared the first time it is drawn to in a frame.
+     * Blocks that nothing is drawn to (e.g. sky) are never cleared or copied.
+     * The Depth Buffer must be cleared after switching.
+     */
+    public void setLazyDepthClear(boolean lazyDepthClear) {
+        this.lazyDepthClear = lazyDepthClear;
+    }
+
+    public boolean isLazyDepthClear() { return lazyDepthClear; }
+
+    /**
+     * Lazy Depth Clear: makes sure the blocks under the pixels [x0, x1] of row y hold this frame's depth.
+     */
+    private void touchDepthBlocks(TileBuffer target, int x0, int x1, int y) {
+        int by = y / HIZ_BLOCK_SIZE;
+        int row = by * hiZBlocksX;
+        int py0 = by * HIZ_BLOCK_SIZE;
+        int py1 = Math.min(py0 + HIZ_BLOCK_SIZE, target.maxY);
+
+        for (int bx = x0 / HIZ_BLOCK_SIZE; bx <= x1 / HIZ_BLOCK_SIZE; bx++) {
+            if (blockGeneration[row + bx] == depthGeneration) continue;
+            blockGeneration[row + bx] = depthGeneration;
+
+            // First use of this block in the frame: clear it
+            int px0 = bx * HIZ_BLOCK_SIZE;
+            int length = Math.min(px0 + HIZ_BLOCK_SIZE, target.maxX) - px0;
+            for (int py = py0; py < py1; py++) {
+                clearDepth(target, target.index(px0, py), length);
+            }
+        }
+    }
+
+    /**
+     * Fills 'length' depth entries of 'target' starting at index 'idx' with the far value of the active format.
+     */
+    private void clearDepth(TileBuffer target, int idx, int length) {
+        switch (depthFormat) {
+            case FLOAT: Arrays.fill(target.zBufferFloat, idx, idx + length, Float.MAX_VALUE); break;
+            case FIXED24: Arrays.fill(target.zBufferFixed, idx, idx + length, 0); break;
+            default: Arrays.fill(target.zBuffer, idx, idx + length, Double.MAX_VALUE); break;
+        }
+    }
+
+    // --- HIERARCHICAL Z BLOCKS (used by HierarchicalZ and the Half-Space Rasterizer) ---
+
+    int getHiZBlocksX() { return hiZBlocksX; }
+
+    /** Conservative farthest Z of a block. May be farther than the truth until the block is refreshed. */
+    double getBlockFarZ(int block) { return blockFarZ[block]; }
+
+    /** Marks the blocks [bx0, bx1] x [by0, by1] (inclusive) as possibly nearer than their stored value. */
+    void markBlocksDirty(int bx0, int by0, int bx1, int by1) {
+        for (int by = by0; by <= by1; by++) {
+            int row = by * hiZBlocksX;
+            for (int bx = bx0; bx <= bx1; bx++) {
+                blockDirty[row + bx] = true;
+            }
+        }
+    }
+
+    /**
+     * Recomputes the farthest Z of a dirty block from the Depth Buffer and returns it.
+     * The block is read from 'target', which must hold the current depth of the whole block.
+     */
+    double refreshBlockFarZ(TileBuffer target, int block) {
+        if (!blockDirty[block]) return blockFarZ[block];
+        blockDirty[block] = false;
+
+        // Lazy Depth Clear: a block nothing was drawn to this frame holds old depth, but counts as cleared
+        if (lazyDepthClear && blockGeneration[block] != depthGeneration) {
+            blockFarZ[block] = Double.MAX_VALUE;
+            return Double.MAX_VALUE;
+        }
+
+        int x0 = (block % hiZBlocksX) * HIZ_BLOCK_SIZE;
+        int y0 = (block / hiZBlocksX) * HIZ_BLOCK_SIZE;
+        int x1 = Math.min(x0 + HIZ_BLOCK_SIZE, width);
+        int y1 = Math.min(y0 + HIZ_BLOCK_SIZE, height);
+
+        double far;
+        switch (depthFormat) {
+            case FLOAT: {
+                float max = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int i = target.index(x0, y), end = i + (x1 - x0); i < end; i++) {
+                        max = Math.max(max, target.zBufferFloat[i]);
+                    }
+                }
+                far = (max == Float.MAX_VALUE) ? Double.MAX_VALUE : max;
+                break;
+            }
+            case FIXED24: {
+                // Reversed-Z: the farthest pixel has the smallest stored value
+                int min = DEPTH_MAX;
+                for (int y = y0; y < y1; y++) {
+                    for (int i = target.index(x0, y), end = i + (x1 - x0); i < end; i++) {
+                        min = Math.min(min, target.zBufferFixed[i]);
+                    }
+                }
+                far = 1.0 - (double)min / DEPTH_MAX;
+                break;
+            }
+            default: {
+                double max = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int i = target.index(x0, y), end = i + (x1 - x0); i < end; i++) {
+                        max = Math.max(max, target.zBuffer[i]);
+                    }
+                }
+                far = max;
+                break;
+            }
+        }
+        blockFarZ[block] = far;
+        return far;
     }
 
     /**
@@ -77,208 +525,716 @@ public class Screen {
     /**
      * Multi-Threaded Rasterizer variant (Tile-Based).
      * Only draws the part of the triangle that falls within [minX, maxX) and [minY, maxY).
+     * <p>
+     * Convenience overload that runs the triangle setup on every call.
+     * The render queue uses {@link #fillTriangle(ProjectedTriangle, int, int, int, int)} instead.
+     * </p>
      */
     public void fillTriangle(int x1, int y1, double z1, double l1,
                              int x2, int y2, double z2, double l2,
                              int x3, int y3, double z3, double l3,
                              int color,
                              int minX, int maxX, int minY, int maxY) {
-        // 1. Sort Vertices by Y (Top to Bottom) using a simple swap bubble-sort
-        // We want v1 to be top (min Y), v3 to be bottom (max Y)
-        if (y1 > y2) {
-            int ti = x1; x1 = x2; x2 = ti;
-            int ty = y1; y1 = y2; y2 = ty;
-            double tz = z1; z1 = z2; z2 = tz;
-            double tl = l1; l1 = l2; l2 = tl;
-        }
-        if (y1 > y3) {
-            int ti = x1; x1 = x3; x3 = ti;
-            int ty = y1; y1 = y3; y3 = ty;
-            double tz = z1; z1 = z3; z3 = tz;
-            double tl = l1; l1 = l3; l3 = tl;
-        }
-        if (y2 > y3) {
-            int ti = x2; x2 = x3; x3 = ti;
-            int ty = y2; y2 = y3; y3 = ty;
-            double tz = z2; z2 = z3; z3 = tz;
-            double tl = l2; l2 = l3; l3 = tl;
-        }
-
-        // Optimization: Bounding Box Check (X and Y)
+        // Integer pixel coordinates are placed on the pixel centers
+        int one = ProjectedTriangle.SUBPIXEL_ONE, half = one / 2;
+        ProjectedTriangle t = new ProjectedTriangle();
+        t.x1 = x1 * one + half; t.y1 = y1 * one + half; t.z1 = z1; t.l1 = l1;
+        t.x2 = x2 * one + half; t.y2 = y2 * one + half; t.z2 = z2; t.l2 = l2;
+        t.x3 = x3 * one + half; t.y3 = y3 * one + half; t.z3 = z3; t.l3 = l3;
+        t.color = color;
+        t.setup();
+        fillTriangle(t, minX, maxX, minY, maxY);
+    }
+
+    /**
+     * Tile Rasterizer using a precomputed triangle setup (see {@link ProjectedTriangle#setup()}).
+     * Only draws the part of the triangle that falls within [minX, maxX) and [minY, maxY).
+     */
+    public void fillTriangle(ProjectedTriangle t, int minX, int maxX, int minY, int maxY) {
+        fillTriangle(screenTarget, t, minX, maxX, minY, maxY);
+    }
+
+    /**
+     * Tile Rasterizer drawing into a tile-local buffer (see {@link TileBuffer}).
+     * Only draws the part of the triangle that falls within the tile.
+     */
+    public void fillTriangle(ProjectedTriangle t, TileBuffer tile) {
+        fillTriangle(tile, t, tile.minX, tile.maxX, tile.minY, tile.maxY);
+    }
+
+    private void fillTriangle(TileBuffer target, ProjectedTriangle t, int minX, int maxX, int minY, int maxY) {
+        // 1. Bounding Box Check (X and Y)
         // If the triangle is completely outside this tile, skip it immediately.
-        // Y-check:
-        if (y3 < minY || y1 >= maxY) return;
-        
-        // X-check: find min/max X of the triangle
-        int triMinX = Math.min(x1, Math.min(x2, x3));
-        int triMaxX = Math.max(x1, Math.max(x2, x3));
-        if (triMaxX < minX || triMinX >= maxX) return;
-
-        // 2. Rasterize
+        if (t.maxY < minY || t.minY >= maxY) return;
+        if (t.maxX < minX || t.minX >= maxX) return;
+        if (t.degenerate) return;
+
+        int color = target.visibility ? t.id : t.color; // Visibility Buffer: the ID is "drawn" instead
+
+        // 2. Block Fill: a large triangle covering the whole tile needs no scan conversion at all
+        if (t.coversRect(minX, maxX - 1, minY, maxY - 1)) {
+            fillCoveredRect(target, t, minX, maxX - 1, minY, maxY - 1, color);
+            return;
+        }
+
+        // 3. Rasterize
         // Triangle is split into two parts: Top-Flat and Bottom-Flat by the middle vertex (v2).
-        
-        // Slopes (Change in X, Z, and Lighting per Y)
-        double dX13 = 0, dX12 = 0, dX23 = 0;
-        double dZ13 = 0, dZ12 = 0, dZ23 = 0;
-        double dL13 = 0, dL12 = 0, dL23 = 0;
-
-        if (y3 != y1) {
-            dX13 = (double)(x3 - x1) / (y3 - y1);
-            dZ13 = (z3 - z1) / (y3 - y1);
-            dL13 = (l3 - l1) / (y3 - y1);
-        }
-        if (y2 != y1) {
-            dX12 = (double)(x2 - x1) / (y2 - y1);
-            dZ12 = (z2 - z1) / (y2 - y1);
-            dL12 = (l2 - l1) / (y2 - y1);
-        }
-        if (y3 != y2) {
-            dX23 = (double)(x3 - x2) / (y3 - y2);
-            dZ23 = (z3 - z2) / (y3 - y2);
-            dL23 = (l3 - l2) / (y3 - y2);
-        }
-
-        // Iterate Scanlines
-        
-        // --- Top Half (v1 to v2) ---
-        double curX_A = x1;
-        double curZ_A = z1;
-        double curL_A = l1;
-        double curX_B = x1;
-        double curZ_B = z1;
-        double curL_B = l1;
-
-        // We only loop through lines that are actually inside our slice [minY, maxY)
-        // However, we MUST calculate the start values (curX, curZ) correctly if we skip lines at the top.
-        
-        // Calculate start/end Y for the top half
-        int startY = y1;
-        int endY = y2;
-        
-        // Pre-stepping: If the triangle starts above our slice, we must fast-forward the math.
-        if (startY < minY) {
-            int skip = minY - startY;
-            curX_A += dX13 * skip; curZ_A += dZ13 * skip; curL_A += dL13 * skip;
-            curX_B += dX12 * skip; curZ_B += dZ12 * skip; curL_B += dL12 * skip;
-            startY = minY;
-        }
-        if (endY > maxY) endY = maxY; // Clip bottom
-
-        for (int y = startY; y < endY; y++) {
-            drawScanline(y, (int)curX_A, curZ_A, curL_A, (int)curX_B, curZ_B, curL_B, color, minX, maxX);
-            curX_A += dX13; curZ_A += dZ13; curL_A += dL13;
-            curX_B += dX12; curZ_B += dZ12; curL_B += dL12;
-        }
-
-        // --- Bottom Half (v2 to v3) ---
-        // We need to re-calculate B start values because they originate from v2, not v1.
-        // A continues from v1.
-        
-        // If we completely skipped the top half, we need to advance A to y2
-        if (y1 < y2 && y2 < minY) {
-             // We are starting LATE in the bottom half.
-             // A needs to catch up from y1 to y2... then from y2 to minY.
-             // Actually, A is continuous v1->v3.
-             // So if we start loop at `minY`, A just needs to advance (minY - y1) steps.
-             // BUT, curX_A variable above was already advanced to `endY` (which might be y2 or maxY).
-             
-             // Simplest approach: Reset A to v1 and advance full distance to startY of this loop.
-             curX_A = x1 + dX13 * (Math.max(y2, minY) - y1);
-             curZ_A = z1 + dZ13 * (Math.max(y2, minY) - y1);
-             curL_A = l1 + dL13 * (Math.max(y2, minY) - y1);
-        }
-        
-        // B starts fresh at v2
-        curX_B = x2;
-        curZ_B = z2;
-        curL_B = l2;
-        
-        startY = y2;
-        endY = y3;
-        
-        if (startY < minY) {
-             int skip = minY - startY;
-             // A has already been advanced by the previous loop logic or the catch-up logic
-             if (y2 >= minY) { 
-                 // If we didn't skip the top half, A is already at y2.
-                 // We just need to skip inside this loop.
-                 curX_A += dX13 * skip; curZ_A += dZ13 * skip; curL_A += dL13 * skip;
-             }
-             
-             curX_B += dX23 * skip; curZ_B += dZ23 * skip; curL_B += dL23 * skip;
-             startY = minY;
-        }
-        if (endY > maxY) endY = maxY;
+        // Rows are sampled at their pixel centers. Following the Top-Left Rule, a row belongs to a half
+        // when top <= center < bottom, and a pixel belongs to the span when left <= center < right.
+        int startY = Math.max(minY, t.minY);
+        int endY = Math.min(maxY - 1, t.maxY);
 
         for (int y = startY; y <= endY; y++) {
-            drawScanline(y, (int)curX_A, curZ_A, curL_A, (int)curX_B, curZ_B, curL_B, color, minX, maxX);
-            curX_A += dX13; curZ_A += dZ13; curL_A += dL13;
-            curX_B += dX23; curZ_B += dZ23; curL_B += dL23;
+            int rowY = (y << ProjectedTriangle.SUBPIXEL_BITS) + ProjectedTriangle.SUBPIXEL_ONE / 2;
+            if (rowY < t.topY || rowY >= t.botY) continue;
+
+            // Long edge (v1 -> v3) and the short edge of the current half
+            int longX = edgeSpanBoundary(t.topX, t.topY, t.botX, t.botY, rowY);
+            int shortX = (rowY < t.midY)
+                    ? edgeSpanBoundary(t.topX, t.topY, t.midX, t.midY, rowY)
+                    : edgeSpanBoundary(t.midX, t.midY, t.botX, t.botY, rowY);
+
+            int xStart = t.shortEdgesLeft ? shortX : longX;
+            int xEnd = (t.shortEdgesLeft ? longX : shortX) - 1;
+            drawScanline(target, t, y, xStart, xEnd, color, minX, maxX);
         }
     }
-    
+
+    /**
+     * First pixel whose center is on or right of the edge (xa, ya) -> (xb, yb) on the row whose center is 'rowY'.
+     * Everything is in 28.4 Fixed Point and the edge must not be horizontal (ya < yb).
+     * <p>
+     * This is exact integer math from the edge's upper vertex, so two triangles sharing an edge always
+     * agree on it: the left one's span ends right before the pixel where the right one's span starts.
+     * </p>
+     */
+    private static int edgeSpanBoundary(int xa, int ya, int xb, int yb, int rowY) {
+        long dy = (long)yb - ya;
+        // Edge X on this row = xa + (rowY - ya) * (xb - xa) / dy, first pixel center at or after it
+        long num = (long)xa * dy + ((long)rowY - ya) * ((long)xb - xa) - (ProjectedTriangle.SUBPIXEL_ONE / 2) * dy;
+        return (int)-Math.floorDiv(-num, dy << ProjectedTriangle.SUBPIXEL_BITS);
+    }
+
     /**
-     * Draws a single horizontal line, interpolating Z and Lighting, and checking the Z-Buffer.
+     * Draws a single horizontal line [xStart, xEnd], interpolating Z and Lighting from the triangle's planes,
+     * and checking the Z-Buffer.
      */
-    private void drawScanline(int y, int xStart, double zStart, double lStart, 
-                                     int xEnd, double zEnd, double lEnd, int color,
-                                     int minX, int maxX) {
-        // Ensure Left-to-Right
-        if (xStart > xEnd) {
-            int ti = xStart; xStart = xEnd; xEnd = ti;
-            double tz = zStart; zStart = zEnd; zEnd = tz;
-            double tl = lStart; lStart = lEnd; lEnd = tl;
+    private void drawScanline(TileBuffer target, ProjectedTriangle t, int y, int xStart, int xEnd, int color,
+                              int minX, int maxX) {
+        // X-axis Clipping bounds
+        int realXStart = Math.max(minX, xStart);
+        int realXEnd = Math.min(maxX - 1, xEnd);
+        if (realXStart > realXEnd) return;
+
+        // Sample depth and lighting at the first pixel center
+        double z = t.zPlaneC + t.zPlaneDx * (realXStart + 0.5) + t.zPlaneDy * (y + 0.5);
+        double l = t.lPlaneC + t.lPlaneDx * (realXStart + 0.5) + t.lPlaneDy * (y + 0.5);
+
+        shadeSpan(target, realXStart, y, realXEnd - realXStart + 1, z, t.zPlaneDx, l, t.lPlaneDx, color);
+    }
+
+    /**
+     * Half-Space Rasterizer (alternative to the scanline filler).
+     * <p>
+     * Uses the three integer edge functions from {@link ProjectedTriangle#setup()}:
+     * a pixel is inside the triangle when all of them are >= 0 at its center (28.4 Fixed Point, Top-Left Rule included).
+     * The tile is walked in 8x8 blocks. Evaluating the edges at the block corners
+     * lets us reject blocks outside the triangle and accept fully covered blocks
+     * without testing their pixels one by one. Only the blocks on the triangle's border are tested per pixel.
+     * </p>
+     * Only draws the part of the triangle that falls within [minX, maxX) and [minY, maxY).
+     */
+    public void fillTriangleHalfSpace(ProjectedTriangle t, int minX, int maxX, int minY, int maxY) {
+        fillTriangleHalfSpace(screenTarget, t, minX, maxX, minY, maxY, false);
+    }
+
+    /**
+     * Half-Space Rasterizer drawing into a tile-local buffer, with optional Hierarchical Z.
+     * When 'hiZ' is set, blocks whose nearest possible depth is behind the block's farthest stored depth
+     * are skipped before any edge or depth test (see {@link HierarchicalZ}).
+     */
+    public void fillTriangleHalfSpace(ProjectedTriangle t, TileBuffer tile, boolean hiZ) {
+        fillTriangleHalfSpace(tile, t, tile.minX, tile.maxX, tile.minY, tile.maxY, hiZ);
+    }
+
+    private void fillTriangleHalfSpace(TileBuffer target, ProjectedTriangle t,
+                                       int minX, int maxX, int minY, int maxY, boolean hiZ) {
+        if (t.degenerate) return;
+
+        // Clip the bounding box to the tile (both inclusive from here on)
+        int x0 = Math.max(minX, t.minX);
+        int x1 = Math.min(maxX - 1, t.maxX);
+        int y0 = Math.max(minY, t.minY);
+        int y1 = Math.min(maxY - 1, t.maxY);
+        if (x0 > x1 || y0 > y1) return;
+
+        // Edge steps from one pixel to the next (edge functions are in 28.4 units)
+        int sub = ProjectedTriangle.SUBPIXEL_BITS;
+        long a0 = t.edgeA0 << sub, b0 = t.edgeB0 << sub;
+        long a1 = t.edgeA1 << sub, b1 = t.edgeB1 << sub;
+        long a2 = t.edgeA2 << sub, b2 = t.edgeB2 << sub;
+
+        // How much each edge function can grow inside a block, relative to its top-left pixel
+        int last = BLOCK_SIZE - 1;
+        long grow0 = (Math.max(a0, 0) + Math.max(b0, 0)) * last;
+        long grow1 = (Math.max(a1, 0) + Math.max(b1, 0)) * last;
+        long grow2 = (Math.max(a2, 0) + Math.max(b2, 0)) * last;
+        long shrink0 = (Math.min(a0, 0) + Math.min(b0, 0)) * last;
+        long shrink1 = (Math.min(a1, 0) + Math.min(b1, 0)) * last;
+        long shrink2 = (Math.min(a2, 0) + Math.min(b2, 0)) * last;
+        long half = ProjectedTriangle.SUBPIXEL_ONE / 2;
+
+        int color = target.visibility ? t.id : t.color; // Visibility Buffer: the ID is "drawn" instead
+
+        // In the Depth Pre-Pass, pass 1 runs with Hi-Z and pass 2 without it, so merged runs would start
+        // at different pixels in the two passes and step to slightly different depths (EQUAL would fail).
+        // There, every accepted block is filled on its own, from its own first pixel.
+        boolean mergeRuns = target.pass == PixelPass.SHADE;
+
+        // Depth plane offset from a block's top-left pixel center to its nearest pixel center
+        double zNearOffset = (Math.min(t.zPlaneDx, 0) + Math.min(t.zPlaneDy, 0)) * last;
+
+        // Blocks are aligned to the tile grid (tiles are a multiple of BLOCK_SIZE)
+        int blockX0 = minX + ((x0 - minX) / BLOCK_SIZE) * BLOCK_SIZE;
+        int blockY0 = minY + ((y0 - minY) / BLOCK_SIZE) * BLOCK_SIZE;
+
+        for (int by = blockY0; by <= y1; by += BLOCK_SIZE) {
+            // Edge values at the center of the top-left pixel of the first block in this row
+            long centerX = ((long)blockX0 << sub) + half, centerY = ((long)by << sub) + half;
+            long rowE0 = t.edgeA0 * centerX + t.edgeB0 * centerY + t.edgeC0;
+            long rowE1 = t.edgeA1 * centerX + t.edgeB1 * centerY + t.edgeC1;
+            long rowE2 = t.edgeA2 * centerX + t.edgeB2 * centerY + t.edgeC2;
+
+            int py0 = Math.max(by, y0);
+            int py1 = Math.min(by + last, y1);
+
+            // Run of consecutive fully covered blocks, filled together as one rectangle
+            int runStart = -1, runEnd = -1;
+
+            for (int bx = blockX0; bx <= x1; bx += BLOCK_SIZE) {
+                long e0 = rowE0 + a0 * (bx - blockX0);
+                long e1 = rowE1 + a1 * (bx - blockX0);
+                long e2 = rowE2 + a2 * (bx - blockX0);
+
+                int px0 = Math.max(bx, x0);
+                int px1 = Math.min(bx + last, x1);
+
+                // Trivial Reject: some edge is negative over the whole block
+                boolean skip = e0 + grow0 < 0 || e1 + grow1 < 0 || e2 + grow2 < 0;
+
+                // Hi-Z Reject: the triangle is behind everything already drawn in this block
+                if (!skip && hiZ) {
+                    double blockNearZ = Math.max(t.nearZ, t.zPlaneC + t.zPlaneDx * (bx + 0.5) + t.zPlaneDy * (by + 0.5) + zNearOffset);
+                    skip = blockNearZ >= blockFarZ[(by / BLOCK_SIZE) * hiZBlocksX + bx / BLOCK_SIZE];
+                }
+
+                // Trivial Accept: all edges are non-negative over the whole block.
+                // Extend the current run, it is drawn once it ends.
+                if (!skip && e0 + shrink0 >= 0 && e1 + shrink1 >= 0 && e2 + shrink2 >= 0) {
+                    if (!mergeRuns) {
+                        fillCoveredRect(target, t, px0, px1, py0, py1, color);
+                        continue;
+                    }
+                    if (runStart < 0) runStart = px0;
+                    runEnd = px1;
+                    continue;
+                }
+                if (runStart >= 0) {
+                    fillCoveredRect(target, t, runStart, runEnd, py0, py1, color);
+                    runStart = -1;
+                }
+                if (skip) continue;
+
+                // Partial block: find the covered run on each row (triangles are convex, so it is contiguous)
+                for (int py = py0; py <= py1; py++) {
+                    long dy = py - by;
+                    long w0 = e0 + a0 * (px0 - bx) + b0 * dy;
+                    long w1 = e1 + a1 * (px0 - bx) + b1 * dy;
+                    long w2 = e2 + a2 * (px0 - bx) + b2 * dy;
+
+                    int spanStart = -1;
+                    int spanEnd = px1;
+                    for (int px = px0; px <= px1; px++) {
+                        if ((w0 | w1 | w2) >= 0) {
+                            if (spanStart < 0) spanStart = px;
+                            spanEnd = px;
+                        } else if (spanStart >= 0) {
+                            break;
+                        }
+                        w0 += a0; w1 += a1; w2 += a2;
+                    }
+                    if (spanStart < 0) continue;
+
+                    double z = t.zPlaneC + t.zPlaneDx * (spanStart + 0.5) + t.zPlaneDy * (py + 0.5);
+                    double l = t.lPlaneC + t.lPlaneDx * (spanStart + 0.5) + t.lPlaneDy * (py + 0.5);
+                    shadeSpan(target, spanStart, py, spanEnd - spanStart + 1, z, t.zPlaneDx, l, t.lPlaneDx, color);
+                }
+            }
+            if (runStart >= 0) fillCoveredRect(target, t, runStart, runEnd, py0, py1, color);
         }
+    }
 
-        // Clipping (Y-axis) - redundant if called from fillTriangle with correct bounds, but safe.
-        if (y < 0 || y >= height) return;
+    /**
+     * Block Fill: draws the rectangle [x0, x1] x [y0, y1] (inclusive), which the caller has already found
+     * to be completely inside the triangle. There are no edge tests and no clamps: every row is one
+     * full-width span, depth and lighting come straight from the plane equations.
+     */
+    private void fillCoveredRect(TileBuffer target, ProjectedTriangle t, int x0, int x1, int y0, int y1, int color) {
+        int count = x1 - x0 + 1;
+        double zRow = t.zPlaneC + t.zPlaneDx * (x0 + 0.5);
+        double lRow = t.lPlaneC + t.lPlaneDx * (x0 + 0.5);
+        for (int y = y0; y <= y1; y++) {
+            double z = zRow + t.zPlaneDy * (y + 0.5);
+            double l = lRow + t.lPlaneDy * (y + 0.5);
+            shadeSpan(target, x0, y, count, z, t.zPlaneDx, l, t.lPlaneDx, color);
+        }
+    }
 
-        // Calculate Steps for interpolation
-        double width = (double)(xEnd - xStart);
-        if (width <= 0) width = 1;
+    /**
+     * Small-Triangle Rasterizer: plots the pixels of a triangle whose coverage was precomputed by
+     * {@link ProjectedTriangle#setup()} (see {@link ProjectedTriangle#small}), drawing into a tile-local buffer.
+     * <p>
+     * Triangles of 1-4 pixels are common on distant terrain. For them the edge walking of the other
+     * rasterizers costs far more than the pixels themselves, so we only depth-test and shade the covered
+     * pixels, as one span per row of the (at most 2x2) bounding box.
+     * </p>
+     */
+    public void fillSmallTriangle(ProjectedTriangle t, TileBuffer tile) {
+        int color = tile.visibility ? t.id : t.color;
+        int size = ProjectedTriangle.SMALL_SIZE;
+        int rowMask = (1 << size) - 1;
 
-        double zStep = (zEnd - zStart) / width;
-        double lStep = (lEnd - lStart) / width;
+        int y0 = Math.max(tile.minY, t.minY);
+        int y1 = Math.min(tile.maxY - 1, t.maxY);
+        for (int y = y0; y <= y1; y++) {
+            // Covered pixels of this row, clipped to the tile
+            int row = (t.coverageMask >>> ((y - t.minY) * size)) & rowMask;
+            if (t.minX < tile.minX) row &= ~((1 << (tile.minX - t.minX)) - 1);
+            if (t.minX + size > tile.maxX) row &= (1 << Math.max(0, tile.maxX - t.minX)) - 1;
+            if (row == 0) continue;
 
-        double curZ = zStart;
-        double curL = lStart;
+            // Triangles are convex, so the covered pixels of a row are contiguous
+            int first = Integer.numberOfTrailingZeros(row);
+            int count = Integer.bitCount(row);
+            int x = t.minX + first;
+
+            double z = t.zPlaneC + t.zPlaneDx * (x + 0.5) + t.zPlaneDy * (y + 0.5);
+            double l = t.lPlaneC + t.lPlaneDx * (x + 0.5) + t.lPlaneDy * (y + 0.5);
+            shadeSpan(tile, x, y, count, z, t.zPlaneDx, l, t.lPlaneDx, color);
+        }
+    }
+
+    /**
+     * The Pixel Loop: depth-tests and shades 'count' consecutive pixels of 'target', starting at screen pixel (x, y).
+     * Depth and Lighting are stepped linearly along the span, depth in the active {@link DepthFormat}.
+     * Spans that are at least one vector wide go to the SIMD loop when it is available.
+     */
+    private void shadeSpan(TileBuffer target, int x, int y, int count, double z, double zStep, double l, double lStep, int color) {
+        if (count <= 0) return;
+        if (lazyDepthClear) touchDepthBlocks(target, x, x + count - 1, y);
+
+        int idx = target.index(x, y);
+        if (target.visibility) {
+            // Visibility Buffer: 'color' is the triangle ID. It goes through the same loops unchanged,
+            // because "shading" a 24-bit value with a constant light of 1.0 returns it as-is.
+            int[] ids = target.triangleIds;
+            switch (depthFormat) {
+                case FLOAT: shadeSpanFloat(ids, target.zBufferFloat, idx, count, z, zStep, 1.0, 0.0, color, false); break;
+                case FIXED24: shadeSpanFixed(ids, target.zBufferFixed, idx, count, z, zStep, 1.0, 0.0, color, false); break;
+                default: shadeSpanDouble(ids, target.zBuffer, idx, count, z, zStep, 1.0, 0.0, color, false); break;
+            }
+            return;
+        }
+        if (target.pass == PixelPass.DEPTH_ONLY) {
+            depthSpan(target, idx, count, z, zStep);
+            return;
+        }
+        if (target.pass == PixelPass.EQUAL) {
+            shadeEqualSpan(target, idx, count, z, zStep, l, lStep, color);
+            return;
+        }
+        switch (depthFormat) {
+            case FLOAT: shadeSpanFloat(target.pixels, target.zBufferFloat, idx, count, z, zStep, l, lStep, color, fixedPointInterpolation); break;
+            case FIXED24: shadeSpanFixed(target.pixels, target.zBufferFixed, idx, count, z, zStep, l, lStep, color, fixedPointInterpolation); break;
+            default: shadeSpanDouble(target.pixels, target.zBuffer, idx, count, z, zStep, l, lStep, color, fixedPointInterpolation); break;
+        }
+    }
+
+    private static void shadeSpanDouble(int[] pixels, double[] zBuffer, int idx, int count,
+                                        double z, double zStep, double l, double lStep, int color, boolean fixedPoint) {
+        if (SIMD_AVAILABLE && count >= VectorSpans.DOUBLE_LANES) {
+            VectorSpans.shadeSpanDouble(pixels, zBuffer, idx, count, z, zStep, l, lStep, color);
+            return;
+        }
 
-        // X-axis Clipping bounds
-        int realXStart = Math.max(minX, xStart);
-        int realXEnd = Math.min(maxX - 1, xEnd);
-        
-        // Adjust start values if we clipped the start
-        double offset = (realXStart - xStart);
-        curZ += zStep * offset;
-        curL += lStep * offset;
-
-        int bufferRowOffset = y * this.width;
-        
         // Base color components
         int rBase = (color >> 16) & 0xFF;
         int gBase = (color >> 8) & 0xFF;
         int bBase = color & 0xFF;
 
-        for (int x = realXStart; x <= realXEnd; x++) {
-            int idx = bufferRowOffset + x;
-            
+        int end = idx + count;
+        if (fixedPoint) {
+            int light = toFixedLight(l);
+            int lightStep = toFixedLight(lStep);
+            for (; idx < end; idx++) {
+                if (z < zBuffer[idx]) {
+                    zBuffer[idx] = z;
+                    pixels[idx] = shadeFixedPoint(rBase, gBase, bBase, light);
+                }
+                z += zStep;
+                light += lightStep;
+            }
+            return;
+        }
+
+        for (; idx < end; idx++) {
             // --- Z-BUFFER TEST ---
-            if (curZ < zBuffer[idx]) {
-                zBuffer[idx] = curZ; 
-                
+            if (z < zBuffer[idx]) {
+                zBuffer[idx] = z;
+
                 // Apply Lighting to Base Color
-                int r = (int)(rBase * curL);
-                int g = (int)(gBase * curL);
-                int b = (int)(bBase * curL);
-                
+                int r = (int)(rBase * l);
+                int g = (int)(gBase * l);
+                int b = (int)(bBase * l);
+
                 pixels[idx] = (r << 16) | (g << 8) | b;
             }
-            
-            curZ += zStep;
-            curL += lStep;
+
+            z += zStep;
+            l += lStep;
+        }
+    }
+
+    private static void shadeSpanFloat(int[] pixels, float[] zBufferFloat, int idx, int count,
+                                       double z, double zStep, double l, double lStep, int color, boolean fixedPoint) {
+        if (SIMD_AVAILABLE && count >= VectorSpans.FLOAT_LANES) {
+            VectorSpans.shadeSpanFloat(pixels, zBufferFloat, idx, count, z, zStep, l, lStep, color);
+            return;
+        }
+
+        int rBase = (color >> 16) & 0xFF;
+        int gBase = (color >> 8) & 0xFF;
+        int bBase = color & 0xFF;
+
+        // Depth is interpolated in single precision, like it is stored
+        float zf = (float)z;
+        float zStepF = (float)zStep;
+
+        int end = idx + count;
+        if (fixedPoint) {
+            int light = toFixedLight(l);
+            int lightStep = toFixedLight(lStep);
+            for (; idx < end; idx++) {
+                if (zf < zBufferFloat[idx]) {
+                    zBufferFloat[idx] = zf;
+                    pixels[idx] = shadeFixedPoint(rBase, gBase, bBase, light);
+                }
+                zf += zStepF;
+                light += lightStep;
+            }
+            return;
+        }
+
+        for (; idx < end; idx++) {
+            if (zf < zBufferFloat[idx]) {
+                zBufferFloat[idx] = zf;
+                pixels[idx] = ((int)(rBase * l) << 16) | ((int)(gBase * l) << 8) | (int)(bBase * l);
+            }
+            zf += zStepF;
+            l += lStep;
         }
     }
 
+    private static void shadeSpanFixed(int[] pixels, int[] zBufferFixed, int idx, int count,
+                                       double z, double zStep, double l, double lStep, int color, boolean fixedPoint) {
+        // Convert the span's end points to Reversed-Z fixed point and step between them with integer adds
+        int dStart = toFixedDepth(z);
+        int dStep = count > 1 ? (toFixedDepth(z + zStep * (count - 1)) - dStart) / (count - 1) : 0;
+
+        if (SIMD_AVAILABLE && count >= VectorSpans.FIXED_LANES) {
+            VectorSpans.shadeSpanFixed(pixels, zBufferFixed, idx, count, dStart, dStep, l, lStep, color);
+            return;
+        }
+
+        int rBase = (color >> 16) & 0xFF;
+        int gBase = (color >> 8) & 0xFF;
+        int bBase = color & 0xFF;
+
+        int d = dStart;
+        int end = idx + count;
+        if (fixedPoint) {
+            // Everything in integers: 24.7 depth and 16.16 lighting
+            int light = toFixedLight(l);
+            int lightStep = toFixedLight(lStep);
+            for (; idx < end; idx++) {
+                int depth = d >> DEPTH_FRACTION_BITS;
+                if (depth > zBufferFixed[idx]) {
+                    zBufferFixed[idx] = depth;
+                    pixels[idx] = shadeFixedPoint(rBase, gBase, bBase, light);
+                }
+                d += dStep;
+                light += lightStep;
+            }
+            return;
+        }
+
+        for (; idx < end; idx++) {
+            int depth = d >> DEPTH_FRACTION_BITS;
+            if (depth > zBufferFixed[idx]) { // Reversed-Z: larger is nearer
+                zBufferFixed[idx] = depth;
+                pixels[idx] = ((int)(rBase * l) << 16) | ((int)(gBase * l) << 8) | (int)(bBase * l);
+            }
+            d += dStep;
+            l += lStep;
+        }
+    }
+
+    // --- DEPTH PRE-PASS ---
+    // Pass 1 and pass 2 step Z exactly the same way (and pick the scalar or SIMD loop by the same rule),
+    // so the depth a triangle computes for a pixel is bit-identical in both passes and EQUAL can match it.
+
+    /**
+     * Stripped-down Pixel Loop for pass 1: depth test and depth write, no lighting and no color.
+     */
+    private void depthSpan(TileBuffer target, int idx, int count, double z, double zStep) {
+        switch (depthFormat) {
+            case FLOAT: {
+                float[] zBuffer = target.zBufferFloat;
+                if (SIMD_AVAILABLE && count >= VectorSpans.FLOAT_LANES) {
+                    VectorSpans.depthSpanFloat(zBuffer, idx, count, z, zStep);
+                    return;
+                }
+                float zf = (float)z;
+                float zStepF = (float)zStep;
+                for (int end = idx + count; idx < end; idx++) {
+                    if (zf < zBuffer[idx]) zBuffer[idx] = zf;
+                    zf += zStepF;
+                }
+                break;
+            }
+            case FIXED24: {
+                int[] zBuffer = target.zBufferFixed;
+                int d = toFixedDepth(z);
+                int dStep = count > 1 ? (toFixedDepth(z + zStep * (count - 1)) - d) / (count - 1) : 0;
+                if (SIMD_AVAILABLE && count >= VectorSpans.FIXED_LANES) {
+                    VectorSpans.depthSpanFixed(zBuffer, idx, count, d, dStep);
+                    return;
+                }
+                for (int end = idx + count; idx < end; idx++) {
+                    int depth = d >> DEPTH_FRACTION_BITS;
+                    if (depth > zBuffer[idx]) zBuffer[idx] = depth;
+                    d += dStep;
+                }
+                break;
+            }
+            default: {
+                double[] zBuffer = target.zBuffer;
+                if (SIMD_AVAILABLE && count >= VectorSpans.DOUBLE_LANES) {
+                    VectorSpans.depthSpanDouble(zBuffer, idx, count, z, zStep);
+                    return;
+                }
+                for (int end = idx + count; idx < end; idx++) {
+                    if (z < zBuffer[idx]) zBuffer[idx] = z;
+                    z += zStep;
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Pixel Loop for pass 2: shades the pixels whose depth equals the stored depth. Depth is not written.
+     */
+    private void shadeEqualSpan(TileBuffer target, int idx, int count,
+                                double z, double zStep, double l, double lStep, int color) {
+        int[] pixels = target.pixels;
+        int rBase = (color >> 16) & 0xFF;
+        int gBase = (color >> 8) & 0xFF;
+        int bBase = color & 0xFF;
+
+        switch (depthFormat) {
+            case FLOAT: {
+                float[] zBuffer = target.zBufferFloat;
+                if (SIMD_AVAILABLE && count >= VectorSpans.FLOAT_LANES) {
+                    VectorSpans.shadeEqualSpanFloat(pixels, zBuffer, idx, count, z, zStep, l, lStep, color);
+                    return;
+                }
+                float zf = (float)z;
+                float zStepF = (float)zStep;
+                if (fixedPointInterpolation) {
+                    int light = toFixedLight(l);
+                    int lightStep = toFixedLight(lStep);
+                    for (int end = idx + count; idx < end; idx++) {
+                        if (zf == zBuffer[idx]) pixels[idx] = shadeFixedPoint(rBase, gBase, bBase, light);
+                        zf += zStepF;
+                        light += lightStep;
+                    }
+                    break;
+                }
+                for (int end = idx + count; idx < end; idx++) {
+                    if (zf == zBuffer[idx]) {
+                        pixels[idx] = ((int)(rBase * l) << 16) | ((int)(gBase * l) << 8) | (int)(bBase * l);
+                    }
+                    zf += zStepF;
+                    l += lStep;
+                }
+                break;
+            }
+            case FIXED24: {
+                int[] zBuffer = target.zBufferFixed;
+                int d = toFixedDepth(z);
+                int dStep = count > 1 ? (toFixedDepth(z + zStep * (count - 1)) - d) / (count - 1) : 0;
+                if (SIMD_AVAILABLE && count >= VectorSpans.FIXED_LANES) {
+                    VectorSpans.shadeEqualSpanFixed(pixels, zBuffer, idx, count, d, dStep, l, lStep, color);
+                    return;
+                }
+                if (fixedPointInterpolation) {
+                    int light = toFixedLight(l);
+                    int lightStep = toFixedLight(lStep);
+                    for (int end = idx + count; idx < end; idx++) {
+                        if ((d >> DEPTH_FRACTION_BITS) == zBuffer[idx]) {
+                            pixels[idx] = shadeFixedPoint(rBase, gBase, bBase, light);
+                        }
+                        d += dStep;
+                        light += lightStep;
+                    }
+                    break;
+                }
+                for (int end = idx + count; idx < end; idx++) {
+                    if ((d >> DEPTH_FRACTION_BITS) == zBuffer[idx]) {
+                        pixels[idx] = ((int)(rBase * l) << 16) | ((int)(gBase * l) << 8) | (int)(bBase * l);
+                    }
+                    d += dStep;
+                    l += lStep;
+                }
+                break;
+            }
+            default: {
+                double[] zBuffer = target.zBuffer;
+                if (SIMD_AVAILABLE && count >= VectorSpans.DOUBLE_LANES) {
+                    VectorSpans.shadeEqualSpanDouble(pixels, zBuffer, idx, count, z, zStep, l, lStep, color);
+                    return;
+                }
+                if (fixedPointInterpolation) {
+                    int light = toFixedLight(l);
+                    int lightStep = toFixedLight(lStep);
+                    for (int end = idx + count; idx < end; idx++) {
+                        if (z == zBuffer[idx]) pixels[idx] = shadeFixedPoint(rBase, gBase, bBase, light);
+                        z += zStep;
+                        light += lightStep;
+                    }
+                    break;
+                }
+                for (int end = idx + count; idx < end; idx++) {
+                    if (z == zBuffer[idx]) {
+                        pixels[idx] = ((int)(rBase * l) << 16) | ((int)(gBase * l) << 8) | (int)(bBase * l);
+                    }
+                    z += zStep;
+                    l += lStep;
+                }
+                break;
+            }
+        }
+    }
+
+    // --- VISIBILITY BUFFER ---
+
+    /**
+     * Allocates the triangle ID buffer used by the Visibility Buffer path (does nothing if it already exists).
+     * Must be called before a {@link TileBuffer} in visibility mode is bound to this screen.
+     */
+    public void allocateVisibilityBuffer() {
+        if (triangleIds == null) triangleIds = new int[width * height];
+    }
+
+    /**
+     * Visibility Buffer Resolve: shades every pixel of [minX, maxX) x [minY, maxY) exactly once.
+     * <p>
+     * The raster pass only stored depth and the ID of the front-most triangle per pixel
+     * (see {@link ProjectedTriangle#id}). Here the lighting of that triangle is evaluated from its plane
+     * equation at the pixel, so the shading cost depends on the resolution and not on the overdraw.
+     * Pixels without a triangle get the sky gradient.
+     * </p>
+     *
+     * @param triangles The render queue the IDs refer to (ID = index + 1).
+     */
+    public void resolveVisibility(ProjectedTriangle[] triangles, int minX, int maxX, int minY, int maxY,
+                                  int skyTopColor, int skyBottomColor) {
+        for (int y = minY; y < maxY; y++) {
+            int sky = skyColor(y, skyTopColor, skyBottomColor);
+            int idx = y * width + minX;
+
+            if (fixedPointInterpolation) {
+                resolveRowFixedPoint(triangles, y, minX, maxX, idx, sky);
+                continue;
+            }
+
+            for (int x = minX; x < maxX; x++, idx++) {
+                int id = triangleIds[idx];
+                if (id == 0) {
+                    pixels[idx] = sky;
+                    continue;
+                }
+
+                ProjectedTriangle t = triangles[id - 1];
+                double l = t.lPlaneC + t.lPlaneDx * (x + 0.5) + t.lPlaneDy * (y + 0.5);
+                // Pixel centers on a triangle's border may extrapolate slightly past the vertex values
+                if (l < 0) l = 0; else if (l > 1) l = 1;
+
+                int color = t.color;
+                int r = (int)(((color >> 16) & 0xFF) * l);
+                int g = (int)(((color >> 8) & 0xFF) * l);
+                int b = (int)((color & 0xFF) * l);
+                pixels[idx] = (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    /**
+     * One row of {@link #resolveVisibility} with Lighting in 16.16 fixed point: the lighting is evaluated
+     * where a run of pixels of the same triangle starts, then stepped with integer adds like in the Pixel Loop.
+     */
+    private void resolveRowFixedPoint(ProjectedTriangle[] triangles, int y, int minX, int maxX, int idx, int sky) {
+        int runId = 0;
+        int rBase = 0, gBase = 0, bBase = 0;
+        int light = 0, lightStep = 0;
+
+        for (int x = minX; x < maxX; x++, idx++) {
+            int id = triangleIds[idx];
+            if (id == 0) {
+                pixels[idx] = sky;
+                runId = 0;
+                continue;
+            }
+
+            if (id != runId) {
+                ProjectedTriangle t = triangles[id - 1];
+                light = toFixedLight(t.lPlaneC + t.lPlaneDx * (x + 0.5) + t.lPlaneDy * (y + 0.5));
+                lightStep = toFixedLight(t.lPlaneDx);
+                rBase = (t.color >> 16) & 0xFF;
+                gBase = (t.color >> 8) & 0xFF;
+                bBase = t.color & 0xFF;
+                runId = id;
+            }
+
+            // Pixel centers on a triangle's border may extrapolate slightly past the vertex values
+            int clamped = light < 0 ? 0 : Math.min(light, 1 << LIGHT_FRACTION_BITS);
+            pixels[idx] = shadeFixedPoint(rBase, gBase, bBase, clamped);
+            light += lightStep;
+        }
+    }
+
+    /**
+     * Converts a Z value (0 = near, 1 = far) into 24.7 fixed-point Reversed-Z.
+     * Values outside [0, 1] are clamped, so the result always fits in a positive int.
+     */
+    private static int toFixedDepth(double z) {
+        double reversed = 1.0 - z;
+        if (reversed <= 0) return 0;
+        if (reversed >= 1) return (int)DEPTH_FIXED_SCALE;
+        return (int)(reversed * DEPTH_FIXED_SCALE);
+    }
+
     public static int hexStringToInt(String hexString) {
         hexString = hexString.toUpperCase();
         if (hexString.startsWith("#")) {
@@ -308,6 +1264,19 @@ public class Screen {
      * @param bottomColor Hex color for the horizon/bottom.
      */
     public void drawSky(int topColor, int bottomColor) {
+        for (int y = 0; y < height; y++) {
+            int color = skyColor(y, topColor, bottomColor);
+
+            for (int x = 0; x < width; x++) {
+                pixels[x + y * width] = color;
+            }
+        }
+    }
+
+    /**
+     * The color of the sky gradient on row y.
+     */
+    private int skyColor(int y, int topColor, int bottomColor) {
         int r1 = (topColor >> 16) & 0xFF;
         int g1 = (topColor >> 8) & 0xFF;
         int b1 = topColor & 0xFF;
@@ -316,17 +1285,11 @@ public class Screen {
         int g2 = (bottomColor >> 8) & 0xFF;
         int b2 = bottomColor & 0xFF;
 
-        for (int y = 0; y < height; y++) {
-            double alpha = (double) y / height;
-            int r = (int) (r1 + (r2 - r1) * alpha);
-            int g = (int) (g1 + (g2 - g1) * alpha);
-            int b = (int) (b1 + (b2 - b1) * alpha);
-            int color = (r << 16) | (g << 8) | b;
-
-            for (int x = 0; x < width; x++) {
-                pixels[x + y * width] = color;
-            }
-        }
+        double alpha = (double) y / height;
+        int r = (int) (r1 + (r2 - r1) * alpha);
+        int g = (int) (g1 + (g2 - g1) * alpha);
+        int b = (int) (b1 + (b2 - b1) * alpha);
+        return (r << 16) | (g << 8) | b;
     }
 
     /**
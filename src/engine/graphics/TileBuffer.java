@@ -0,0 +1,125 @@
+package engine.graphics;
+
+/**
+ * A small, contiguous Color + Depth buffer covering one screen tile.
+ * <p>
+ * Rasterizing straight into the full-screen arrays jumps 'width' pixels from one row to the next,
+ * so every row of a tile touches new cache lines (and often a new memory page), and two threads
+ * working on neighbouring tiles can end up writing to the same cache line at the tile border.
+ * Instead, every tile worker binds its own TileBuffer to the tile it is working on, rasterizes into it
+ * (rows are packed, so the whole tile stays in L1/L2), and copies the finished tile back to the
+ * {@link Screen} once with {@link #flush()}.
+ * </p>
+ * The Screen also wraps its own full-screen arrays in a TileBuffer, so the rasterizers
+ * do not care which kind of buffer they are drawing into.
+ */
+public class TileBuffer {
+    // Screen-space area covered by this buffer: [minX, maxX) x [minY, maxY)
+    int minX, maxX, minY, maxY;
+    // Distance between two rows in the arrays
+    int stride;
+
+    int[] pixels = new int[0];
+    // Depth, only the array matching the Screen's DepthFormat is used
+    double[] zBuffer;
+    float[] zBufferFloat;
+    int[] zBufferFixed;
+
+    // --- VISIBILITY BUFFER ---
+    // When set, the rasterizers write triangle IDs into 'triangleIds' instead of shading into 'pixels',
+    // and the tile's IDs (not its colors) are copied to and from the screen.
+    boolean visibility;
+    int[] triangleIds = new int[0];
+
+    // What the Pixel Loop does with this buffer (Depth Pre-Pass)
+    Screen.PixelPass pass = Screen.PixelPass.SHADE;
+
+    // The screen this buffer is bound to (null while unbound)
+    private Screen screen;
+
+    public TileBuffer() {
+    }
+
+    /**
+     * Binds this buffer to the tile [minX, maxX) x [minY, maxY) of the screen and loads the tile's
+     * current color and depth. The arrays only grow, so a worker can reuse one buffer for all its tiles.
+     */
+    public void bind(Screen screen, int minX, int maxX, int minY, int maxY) {
+        prepare(screen, minX, maxX, minY, maxY);
+        screen.readTile(this);
+    }
+
+    /**
+     * Binds this buffer to a tile like {@link #bind(Screen, int, int, int, int)}, but instead of loading
+     * the tile it starts from a cleared one: sky gradient color and far depth (the fused frame clear).
+     */
+    public void bindCleared(Screen screen, int minX, int maxX, int minY, int maxY, int skyTopColor, int skyBottomColor) {
+        prepare(screen, minX, maxX, minY, maxY);
+        screen.clearArea(this, minX, maxX, minY, maxY, skyTopColor, skyBottomColor);
+    }
+
+    private void prepare(Screen screen, int minX, int maxX, int minY, int maxY) {
+        this.screen = screen;
+        setArea(minX, maxX, minY, maxY, maxX - minX);
+
+        int size = stride * (maxY - minY);
+        if (visibility) {
+            if (triangleIds.length < size) triangleIds = new int[size];
+        } else {
+            if (pixels.length < size) pixels = new int[size];
+        }
+        switch (screen.getDepthFormat()) {
+            case FLOAT:
+                if (zBufferFloat == null || zBufferFloat.length < size) zBufferFloat = new float[size];
+                break;
+            case FIXED24:
+                if (zBufferFixed == null || zBufferFixed.length < size) zBufferFixed = new int[size];
+                break;
+            default:
+                if (zBuffer == null || zBuffer.length < size) zBuffer = new double[size];
+                break;
+        }
+    }
+
+    /**
+     * Writes the tile's color and depth back to the screen it is bound to.
+     */
+    public void flush() {
+        screen.writeTile(this);
+    }
+
+    /**
+     * Selects the Visibility Buffer mode for the next bind: the tile stores depth and triangle IDs
+     * (see {@link ProjectedTriangle#id}), and is shaded later by {@link Screen#resolveVisibility}.
+     * Requires {@link Screen#allocateVisibilityBuffer()}.
+     */
+    public void setVisibility(boolean visibility) {
+        this.visibility = visibility;
+    }
+
+    /**
+     * Selects what the rasterizers do when drawing into this buffer, e.g. the two passes of the
+     * Depth Pre-Pass. Can be changed while the buffer is bound.
+     */
+    public void setPass(Screen.PixelPass pass) {
+        this.pass = pass;
+    }
+
+    public int getMinX() { return minX; }
+    public int getMaxX() { return maxX; }
+    public int getMinY() { return minY; }
+    public int getMaxY() { return maxY; }
+
+    void setArea(int minX, int maxX, int minY, int maxY, int stride) {
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.stride = stride;
+    }
+
+    /** Array index of the screen pixel (x, y), which must be inside this buffer. */
+    int index(int x, int y) {
+        return (y - minY) * stride + (x - minX);
+    }
+}
@@ -0,0 +1,409 @@
+package engine.graphics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD version of the Pixel Loop, using the JDK Vector API (jdk.incubator.vector).
+ * <p>
+ * Processes one full hardware vector of pixels per iteration: depth test, shading and writes
+ * are done for all lanes at once. The lanes that fail the depth test ("hidden") get the values just
+ * loaded blended back in, so every store is a plain full-width store.
+ * The lane count depends on the depth format: e.g. with AVX-512, 8 pixels for DOUBLE depth
+ * and 16 pixels for FLOAT and FIXED24 depth.
+ * </p>
+ * <p>
+ * Lighting is always stepped in 16.16 fixed point (see {@link Screen#setFixedPointInterpolation(boolean)}),
+ * so the color math stays in integer lanes.
+ * Converting double lanes to int lanes (and casting masks between the two shapes) is not
+ * compiled to vector instructions on current JDKs and is far slower than the scalar loop.
+ * Masked stores and masks rebuilt with fromLong() are not either (JDK 17): they make the JIT box
+ * every vector of the loop, which allocates on each iteration. The color mask is therefore built
+ * with a compare on the int lanes (see {@link #colorMaskDouble(VectorMask)}), and the new values are
+ * the receiver of each blend (blending into the vector just loaded was not always compiled either).
+ * </p>
+ * This class is only loaded when the incubator module is present (see {@link Screen#isSimdAvailable()}).
+ * Everything else in the engine must keep working without it.
+ */
+final class VectorSpans {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // Colors next to DOUBLE depth: same lane count, half the bit size.
+    private static final VectorSpecies<Integer> HALF_INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    // Colors next to FLOAT / FIXED24 depth: same shape and lane count.
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+    static final int VECTOR_BITS = DOUBLES.vectorBitSize();
+    static final int DOUBLE_LANES = DOUBLES.length();
+    static final int FLOAT_LANES = FLOATS.length();
+    static final int FIXED_LANES = INTS.length();
+
+    // Lane offsets 0, 1, 2, ... used to step Z and Lighting per lane
+    private static final DoubleVector DOUBLE_LANE_INDEX = DoubleVector.zero(DOUBLES).addIndex(1);
+    private static final FloatVector FLOAT_LANE_INDEX = FloatVector.zero(FLOATS).addIndex(1);
+    private static final IntVector HALF_INT_LANE_INDEX = IntVector.zero(HALF_INTS).addIndex(1);
+    private static final IntVector INT_LANE_INDEX = IntVector.zero(INTS).addIndex(1);
+
+    // No bits / all bits set in every lane, blended to turn a depth mask into lane values
+    private static final DoubleVector DOUBLE_NO_BITS = DoubleVector.zero(DOUBLES);
+    private static final DoubleVector DOUBLE_ALL_BITS =
+            DOUBLE_NO_BITS.reinterpretAsLongs().lanewise(VectorOperators.NOT).reinterpretAsDoubles();
+    private static final FloatVector FLOAT_NO_BITS = FloatVector.zero(FLOATS);
+    private static final FloatVector FLOAT_ALL_BITS =
+            FLOAT_NO_BITS.reinterpretAsInts().lanewise(VectorOperators.NOT).reinterpretAsFloats();
+
+    private VectorSpans() {}
+
+    /**
+     * DOUBLE depth. Same contract as the scalar loop in {@link Screen}; a scalar tail handles the last pixels.
+     */
+    static void shadeSpanDouble(int[] pixels, double[] zBuffer, int idx, int count,
+                                double z, double zStep, double l, double lStep, int color) {
+        int lFixed = Screen.toFixedLight(l);
+        int lStepFixed = Screen.toFixedLight(lStep);
+
+        DoubleVector zLanes = DOUBLE_LANE_INDEX.mul(zStep);
+        IntVector lLanes = HALF_INT_LANE_INDEX.mul(lStepFixed);
+
+        int i = 0;
+        int vectorEnd = count - DOUBLE_LANES + 1;
+        for (; i < vectorEnd; i += DOUBLE_LANES) {
+            int p = idx + i;
+
+            // --- Z-BUFFER TEST (all lanes) ---
+            DoubleVector curZ = zLanes.add(z + zStep * i);
+            DoubleVector oldZ = DoubleVector.fromArray(DOUBLES, zBuffer, p);
+            VectorMask<Double> hidden = curZ.lt(oldZ).not();
+            if (hidden.allTrue()) continue;
+            curZ.blend(oldZ, hidden).intoArray(zBuffer, p);
+
+            IntVector rgb = shade(lLanes.add(lFixed + lStepFixed * i), color);
+            rgb.blend(IntVector.fromArray(HALF_INTS, pixels, p), colorMaskDouble(hidden)).intoArray(pixels, p);
+        }
+
+        // Scalar tail
+        z += zStep * i;
+        l += lStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            if (z < zBuffer[p]) {
+                zBuffer[p] = z;
+                pixels[p] = shadeScalar(l, color);
+            }
+            z += zStep;
+            l += lStep;
+        }
+    }
+
+    /**
+     * FLOAT depth, interpolated in single precision.
+     */
+    static void shadeSpanFloat(int[] pixels, float[] zBuffer, int idx, int count,
+                               double z, double zStep, double l, double lStep, int color) {
+        int lFixed = Screen.toFixedLight(l);
+        int lStepFixed = Screen.toFixedLight(lStep);
+
+        float zf = (float)z;
+        float zStepF = (float)zStep;
+        FloatVector zLanes = FLOAT_LANE_INDEX.mul(zStepF);
+        IntVector lLanes = INT_LANE_INDEX.mul(lStepFixed);
+
+        int i = 0;
+        int vectorEnd = count - FLOAT_LANES + 1;
+        for (; i < vectorEnd; i += FLOAT_LANES) {
+            int p = idx + i;
+
+            FloatVector curZ = zLanes.add(zf + zStepF * i);
+            FloatVector oldZ = FloatVector.fromArray(FLOATS, zBuffer, p);
+            VectorMask<Float> hidden = curZ.lt(oldZ).not();
+            if (hidden.allTrue()) continue;
+            curZ.blend(oldZ, hidden).intoArray(zBuffer, p);
+
+            IntVector rgb = shade(lLanes.add(lFixed + lStepFixed * i), color);
+            rgb.blend(IntVector.fromArray(INTS, pixels, p), colorMaskFloat(hidden)).intoArray(pixels, p);
+        }
+
+        zf += zStepF * i;
+        l += lStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            if (zf < zBuffer[p]) {
+                zBuffer[p] = zf;
+                pixels[p] = shadeScalar(l, color);
+            }
+            zf += zStepF;
+            l += lStep;
+        }
+    }
+
+    /**
+     * FIXED24 (Reversed-Z) depth. 'dStart' and 'dStep' are in 24.7 fixed point, see {@link Screen}.
+     */
+    static void shadeSpanFixed(int[] pixels, int[] zBuffer, int idx, int count,
+                               int dStart, int dStep, double l, double lStep, int color) {
+        int lFixed = Screen.toFixedLight(l);
+        int lStepFixed = Screen.toFixedLight(lStep);
+
+        IntVector dLanes = INT_LANE_INDEX.mul(dStep);
+        IntVector lLanes = INT_LANE_INDEX.mul(lStepFixed);
+
+        int i = 0;
+        int vectorEnd = count - FIXED_LANES + 1;
+        for (; i < vectorEnd; i += FIXED_LANES) {
+            int p = idx + i;
+
+            IntVector curD = dLanes.add(dStart + dStep * i).lanewise(VectorOperators.ASHR, Screen.DEPTH_FRACTION_BITS);
+            IntVector oldD = IntVector.fromArray(INTS, zBuffer, p);
+            VectorMask<Integer> hidden = curD.compare(VectorOperators.LE, oldD);
+            if (hidden.allTrue()) continue;
+            curD.blend(oldD, hidden).intoArray(zBuffer, p);
+
+            IntVector rgb = shade(lLanes.add(lFixed + lStepFixed * i), color);
+            rgb.blend(IntVector.fromArray(INTS, pixels, p), hidden).intoArray(pixels, p);
+        }
+
+        int d = dStart + dStep * i;
+        l += lStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            int depth = d >> Screen.DEPTH_FRACTION_BITS;
+            if (depth > zBuffer[p]) {
+                zBuffer[p] = depth;
+                pixels[p] = shadeScalar(l, color);
+            }
+            d += dStep;
+            l += lStep;
+        }
+    }
+
+    // --- DEPTH PRE-PASS ---
+    // Pass 1 writes depth only, pass 2 shades where the depth is equal to the stored one.
+    // Both passes step Z exactly like each other, so a pixel's depth is bit-identical in the two passes.
+
+    /**
+     * Depth Pre-Pass, pass 1 (DOUBLE depth): depth test and depth write only.
+     */
+    static void depthSpanDouble(double[] zBuffer, int idx, int count, double z, double zStep) {
+        DoubleVector zLanes = DOUBLE_LANE_INDEX.mul(zStep);
+
+        int i = 0;
+        int vectorEnd = count - DOUBLE_LANES + 1;
+        for (; i < vectorEnd; i += DOUBLE_LANES) {
+            int p = idx + i;
+            DoubleVector curZ = zLanes.add(z + zStep * i);
+            DoubleVector oldZ = DoubleVector.fromArray(DOUBLES, zBuffer, p);
+            VectorMask<Double> hidden = curZ.lt(oldZ).not();
+            if (!hidden.allTrue()) curZ.blend(oldZ, hidden).intoArray(zBuffer, p);
+        }
+
+        z += zStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            if (z < zBuffer[p]) zBuffer[p] = z;
+            z += zStep;
+        }
+    }
+
+    /**
+     * Depth Pre-Pass, pass 2 (DOUBLE depth): shades the pixels whose depth equals the stored depth.
+     */
+    static void shadeEqualSpanDouble(int[] pixels, double[] zBuffer, int idx, int count,
+                                     double z, double zStep, double l, double lStep, int color) {
+        int lFixed = Screen.toFixedLight(l);
+        int lStepFixed = Screen.toFixedLight(lStep);
+
+        DoubleVector zLanes = DOUBLE_LANE_INDEX.mul(zStep);
+        IntVector lLanes = HALF_INT_LANE_INDEX.mul(lStepFixed);
+
+        int i = 0;
+        int vectorEnd = count - DOUBLE_LANES + 1;
+        for (; i < vectorEnd; i += DOUBLE_LANES) {
+            int p = idx + i;
+            DoubleVector curZ = zLanes.add(z + zStep * i);
+            VectorMask<Double> hidden = curZ.eq(DoubleVector.fromArray(DOUBLES, zBuffer, p)).not();
+            if (hidden.allTrue()) continue;
+
+            IntVector rgb = shade(lLanes.add(lFixed + lStepFixed * i), color);
+            rgb.blend(IntVector.fromArray(HALF_INTS, pixels, p), colorMaskDouble(hidden)).intoArray(pixels, p);
+        }
+
+        z += zStep * i;
+        l += lStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            if (z == zBuffer[p]) pixels[p] = shadeScalar(l, color);
+            z += zStep;
+            l += lStep;
+        }
+    }
+
+    /**
+     * Depth Pre-Pass, pass 1 (FLOAT depth).
+     */
+    static void depthSpanFloat(float[] zBuffer, int idx, int count, double z, double zStep) {
+        float zf = (float)z;
+        float zStepF = (float)zStep;
+        FloatVector zLanes = FLOAT_LANE_INDEX.mul(zStepF);
+
+        int i = 0;
+        int vectorEnd = count - FLOAT_LANES + 1;
+        for (; i < vectorEnd; i += FLOAT_LANES) {
+            int p = idx + i;
+            FloatVector curZ = zLanes.add(zf + zStepF * i);
+            FloatVector oldZ = FloatVector.fromArray(FLOATS, zBuffer, p);
+            VectorMask<Float> hidden = curZ.lt(oldZ).not();
+            if (!hidden.allTrue()) curZ.blend(oldZ, hidden).intoArray(zBuffer, p);
+        }
+
+        zf += zStepF * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            if (zf < zBuffer[p]) zBuffer[p] = zf;
+            zf += zStepF;
+        }
+    }
+
+    /**
+     * Depth Pre-Pass, pass 2 (FLOAT depth).
+     */
+    static void shadeEqualSpanFloat(int[] pixels, float[] zBuffer, int idx, int count,
+                                    double z, double zStep, double l, double lStep, int color) {
+        int lFixed = Screen.toFixedLight(l);
+        int lStepFixed = Screen.toFixedLight(lStep);
+
+        float zf = (float)z;
+        float zStepF = (float)zStep;
+        FloatVector zLanes = FLOAT_LANE_INDEX.mul(zStepF);
+        IntVector lLanes = INT_LANE_INDEX.mul(lStepFixed);
+
+        int i = 0;
+        int vectorEnd = count - FLOAT_LANES + 1;
+        for (; i < vectorEnd; i += FLOAT_LANES) {
+            int p = idx + i;
+            FloatVector curZ = zLanes.add(zf + zStepF * i);
+            VectorMask<Float> hidden = curZ.eq(FloatVector.fromArray(FLOATS, zBuffer, p)).not();
+            if (hidden.allTrue()) continue;
+
+            IntVector rgb = shade(lLanes.add(lFixed + lStepFixed * i), color);
+            rgb.blend(IntVector.fromArray(INTS, pixels, p), colorMaskFloat(hidden)).intoArray(pixels, p);
+        }
+
+        zf += zStepF * i;
+        l += lStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            if (zf == zBuffer[p]) pixels[p] = shadeScalar(l, color);
+            zf += zStepF;
+            l += lStep;
+        }
+    }
+
+    /**
+     * Depth Pre-Pass, pass 1 (FIXED24 depth).
+     */
+    static void depthSpanFixed(int[] zBuffer, int idx, int count, int dStart, int dStep) {
+        IntVector dLanes = INT_LANE_INDEX.mul(dStep);
+
+        int i = 0;
+        int vectorEnd = count - FIXED_LANES + 1;
+        for (; i < vectorEnd; i += FIXED_LANES) {
+            int p = idx + i;
+            IntVector curD = dLanes.add(dStart + dStep * i).lanewise(VectorOperators.ASHR, Screen.DEPTH_FRACTION_BITS);
+            IntVector oldD = IntVector.fromArray(INTS, zBuffer, p);
+            VectorMask<Integer> hidden = curD.compare(VectorOperators.LE, oldD);
+            if (!hidden.allTrue()) curD.blend(oldD, hidden).intoArray(zBuffer, p);
+        }
+
+        int d = dStart + dStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            int depth = d >> Screen.DEPTH_FRACTION_BITS;
+            if (depth > zBuffer[p]) zBuffer[p] = depth;
+            d += dStep;
+        }
+    }
+
+    /**
+     * Depth Pre-Pass, pass 2 (FIXED24 depth).
+     */
+    static void shadeEqualSpanFixed(int[] pixels, int[] zBuffer, int idx, int count,
+                                    int dStart, int dStep, double l, double lStep, int color) {
+        int lFixed = Screen.toFixedLight(l);
+        int lStepFixed = Screen.toFixedLight(lStep);
+
+        IntVector dLanes = INT_LANE_INDEX.mul(dStep);
+        IntVector lLanes = INT_LANE_INDEX.mul(lStepFixed);
+
+        int i = 0;
+        int vectorEnd = count - FIXED_LANES + 1;
+        for (; i < vectorEnd; i += FIXED_LANES) {
+            int p = idx + i;
+            IntVector curD = dLanes.add(dStart + dStep * i).lanewise(VectorOperators.ASHR, Screen.DEPTH_FRACTION_BITS);
+            VectorMask<Integer> hidden = curD.compare(VectorOperators.NE, IntVector.fromArray(INTS, zBuffer, p));
+            if (hidden.allTrue()) continue;
+
+            IntVector rgb = shade(lLanes.add(lFixed + lStepFixed * i), color);
+            rgb.blend(IntVector.fromArray(INTS, pixels, p), hidden).intoArray(pixels, p);
+        }
+
+        int d = dStart + dStep * i;
+        l += lStep * i;
+        for (; i < count; i++) {
+            int p = idx + i;
+            if ((d >> Screen.DEPTH_FRACTION_BITS) == zBuffer[p]) pixels[p] = shadeScalar(l, color);
+            d += dStep;
+            l += lStep;
+        }
+    }
+
+    /**
+     * The lanes of a DOUBLE depth mask as a mask on the color lanes: the set lanes get all bits set,
+     * are narrowed from long to int lanes and compared with zero.
+     * Like {@link #channel}, small enough to be always inlined.
+     */
+    private static VectorMask<Integer> colorMaskDouble(VectorMask<Double> mask) {
+        return ((IntVector) DOUBLE_NO_BITS.blend(DOUBLE_ALL_BITS, mask).reinterpretAsLongs()
+                .convertShape(VectorOperators.L2I, HALF_INTS, 0)).compare(VectorOperators.NE, 0);
+    }
+
+    /**
+     * The lanes of a FLOAT depth mask as a mask on the color lanes (same shape, so no narrowing).
+     */
+    private static VectorMask<Integer> colorMaskFloat(VectorMask<Float> mask) {
+        return FLOAT_NO_BITS.blend(FLOAT_ALL_BITS, mask).reinterpretAsInts().compare(VectorOperators.NE, 0);
+    }
+
+    /**
+     * Applies 16.16 fixed-point lighting to the base color in every lane and packs it as 0xRRGGBB.
+     */
+    private static IntVector shade(IntVector light, int color) {
+        return channel(light, color, 16).or(channel(light, color, 8)).or(channel(light, color, 0));
+    }
+
+    /**
+     * One lit color channel, moved back to its bit position.
+     * <p>
+     * Kept this small (and {@link #shade} too) so the JIT always inlines them: a vector returned from
+     * a call that is not inlined is boxed, and then the stores that use it are not compiled to vector
+     * instructions either.
+     * </p>
+     */
+    private static IntVector channel(IntVector light, int color, int shift) {
+        return light.mul((color >> shift) & 0xFF)
+                .lanewise(VectorOperators.ASHR, Screen.LIGHT_FRACTION_BITS)
+                .lanewise(VectorOperators.LSHL, shift);
+    }
+
+    private static int shadeScalar(double l, int color) {
+        int r = (int)(((color >> 16) & 0xFF) * l);
+        int g = (int)(((color >> 8) & 0xFF) * l);
+        int b = (int)((color & 0xFF) * l);
+        return (r << 16) | (g << 8) | b;
+    }
+}
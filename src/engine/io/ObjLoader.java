@@ -1,32 +1,29 @@
 package engine.io;
 
-import engine.math.Mesh;
-import engine.math.Triangle;
-import engine.math.Vector3D;
+import engine.math.IndexedMesh;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * A simple OBJ file loader.
  * Supports vertices (v) and faces (f).
  * Does not support normals (vn) or texture coords (vt) yet.
- * Assumes faces are triangles.
+ * Assumes faces are triangles (quads are split in two).
+ * The OBJ vertex list maps directly onto the vertex arrays of an {@link IndexedMesh}, so shared vertices are stored once.
  */
 public class ObjLoader {
     
     /**
-     * Loads an OBJ file from disk into a Mesh.
+     * Loads an OBJ file from disk into an IndexedMesh.
+     * Vertex normals point up and triangles are white.
      * @param filePath Path to the .obj file.
-     * @return The constructed Mesh.
+     * @return The constructed Mesh (empty if the file could not be read).
      */
-    public static Mesh load(String filePath) {
-        Mesh mesh = new Mesh();
-        List<Vector3D> vertices = new ArrayList<>();
+    public static IndexedMesh load(String filePath) {
+        IndexedMesh.Builder builder = new IndexedMesh.Builder();
 
         try (BufferedReader reader = new BufferedReader(new FileReader(new File(filePath)))) {
             String line;
@@ -45,7 +42,7 @@ public class ObjLoader {
                     double x = Double.parseDouble(tokens[1]);
                     double y = Double.parseDouble(tokens[2]);
                     double z = Double.parseDouble(tokens[3]);
-                    vertices.add(new Vector3D(x, y, z));
+                    builder.addVertex(x, y, z);
                     
                 } else if (tokens[0].equals("f")) {
                     // --- Face Definition ---
@@ -67,12 +64,8 @@ public class ObjLoader {
                         vIndices[i] = Integer.parseInt(subTokens[0]) - 1; 
                     }
 
-                    Vector3D p1 = vertices.get(vIndices[0]);
-                    Vector3D p2 = vertices.get(vIndices[1]);
-                    Vector3D p3 = vertices.get(vIndices[2]);
-                    
                     // Add the triangle to the mesh (Default to White color)
-                    mesh.triangles.add(new Triangle(p1, p2, p3, 0xFFFFFF));
+                    builder.addTriangle(vIndices[0], vIndices[1], vIndices[2], 0xFFFFFF);
                     
                     // --- Triangulation (Quad Support) ---
                     // If the face has 4 vertices (Quad), we split it into TWO triangles.
@@ -82,17 +75,16 @@ public class ObjLoader {
                          String vToken = tokens[4];
                          String[] subTokens = vToken.split("/");
                          int v4Index = Integer.parseInt(subTokens[0]) - 1;
-                         Vector3D p4 = vertices.get(v4Index);
                          
-                         mesh.triangles.add(new Triangle(p1, p3, p4, 0xFFFFFF));
+                         builder.addTriangle(vIndices[0], vIndices[2], v4Index, 0xFFFFFF);
                     }
                 }
             }
-            System.out.println("Loaded Model: " + filePath + " (" + mesh.triangles.size() + " triangles)");
+            System.out.println("Loaded Model: " + filePath + " (" + builder.getTriangleCount() + " triangles)");
         } catch (IOException e) {
             System.err.println("Failed to load model: " + filePath);
             e.printStackTrace();
         }
-        return mesh;
+        return builder.build();
     }
 }
@@ -0,0 +1,173 @@
+package engine.math;
+
+import java.util.Arrays;
+
+/**
+ * A compact, indexed 3D mesh stored as a "Structure of Arrays".
+ * <p>
+ * A {@link Mesh} keeps every triangle as its own object, with three position and three normal
+ * objects each (several hundred bytes per triangle), and a vertex shared by six neighbouring terrain
+ * triangles is stored six times. Here every vertex is stored once in flat arrays, and the triangles
+ * only refer to their vertices by index:
+ * </p>
+ * <ul>
+ *     <li><b>positions</b>: x, y, z of vertex i at [3 * i], [3 * i + 1], [3 * i + 2].</li>
+ *     <li><b>normals</b>: Vertex normals, same layout (float is plenty for lighting).</li>
+ *     <li><b>indices</b>: Three vertex indices per triangle.</li>
+ *     <li><b>colors</b>: One color (0xRRGGBB) per triangle.</li>
+ * </ul>
+ * The arrays are walked front to back by the Geometry Stage, which is friendly to the CPU caches and prefetcher.
+ * Use {@link Builder} to create one.
+ */
+public class IndexedMesh {
+    public final double[] positions;
+    public final float[] normals;
+    public final int[] indices;
+    public final int[] colors;
+
+    public final int vertexCount;
+    public final int triangleCount;
+
+    // Bounding Sphere for Culling
+    public Vector3D center = new Vector3D(0,0,0);
+    public double radius = 0;
+
+    /**
+     * Wraps existing arrays (they are not copied). Computes the bounding sphere.
+     *
+     * @param normals Vertex normals, or null to point every normal up (0, 1, 0).
+     */
+    public IndexedMesh(double[] positions, float[] normals, int[] indices, int[] colors) {
+        if (positions.length % 3 != 0) {
+            throw new IllegalArgumentException("Position array length must be a multiple of 3: " + positions.length);
+        }
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index array length must be a multiple of 3: " + indices.length);
+        }
+        this.vertexCount = positions.length / 3;
+        this.triangleCount = indices.length / 3;
+
+        if (normals == null) {
+            normals = new float[positions.length];
+            for (int i = 1; i < normals.length; i += 3) normals[i] = 1.0f;
+        } else if (normals.length != positions.length) {
+            throw new IllegalArgumentException("Normal array length " + normals.length
+                    + " does not match position array length " + positions.length);
+        }
+        if (colors.length != triangleCount) {
+            throw new IllegalArgumentException("Expected " + triangleCount + " triangle colors, got " + colors.length);
+        }
+        for (int index : indices) {
+            if (index < 0 || index >= vertexCount) {
+                throw new IllegalArgumentException("Vertex index out of range: " + index);
+            }
+        }
+
+        this.positions = positions;
+        this.normals = normals;
+        this.indices = indices;
+        this.colors = colors;
+        recalculateBounds();
+    }
+
+    /**
+     * Translates (moves) the entire mesh by the specified offset.
+     */
+    public void translate(double x, double y, double z) {
+        for (int i = 0; i < positions.length; i += 3) {
+            positions[i] += x;
+            positions[i + 1] += y;
+            positions[i + 2] += z;
+        }
+        recalculateBounds(); // Update bounds after moving
+    }
+
+    /**
+     * Calculates the Bounding Sphere (Center and Radius) of the mesh's vertices.
+     * This is used for Frustum Culling (checking if the object is visible).
+     */
+    public void recalculateBounds() {
+        if (vertexCount == 0) return;
+
+        // 1. Calculate Average Center (Centroid)
+        double sumX = 0, sumY = 0, sumZ = 0;
+        for (int i = 0; i < positions.length; i += 3) {
+            sumX += positions[i];
+            sumY += positions[i + 1];
+            sumZ += positions[i + 2];
+        }
+        center.x = sumX / vertexCount;
+        center.y = sumY / vertexCount;
+        center.z = sumZ / vertexCount;
+
+        // 2. Calculate Radius (Distance to furthest point)
+        double maxDistSq = 0;
+        for (int i = 0; i < positions.length; i += 3) {
+            double dx = positions[i] - center.x;
+            double dy = positions[i + 1] - center.y;
+            double dz = positions[i + 2] - center.z;
+            maxDistSq = Math.max(maxDistSq, dx*dx + dy*dy + dz*dz);
+        }
+        radius = Math.sqrt(maxDistSq);
+    }
+
+    /**
+     * Collects vertices and triangles into growable arrays, then builds an {@link IndexedMesh}.
+     */
+    public static class Builder {
+        private double[] positions = new double[3 * 64];
+        private float[] normals = new float[3 * 64];
+        private int[] indices = new int[3 * 64];
+        private int[] colors = new int[64];
+        private int vertexCount = 0;
+        private int triangleCount = 0;
+
+        /**
+         * Adds a vertex with an upward normal and returns its index.
+         */
+        public int addVertex(double x, double y, double z) {
+            return addVertex(x, y, z, 0, 1, 0);
+        }
+
+        /**
+         * Adds a vertex with a normal and returns its index.
+         */
+        public int addVertex(double x, double y, double z, double nx, double ny, double nz) {
+            if (3 * vertexCount == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+                normals = Arrays.copyOf(normals, normals.length * 2);
+            }
+            int i = 3 * vertexCount;
+            positions[i] = x; positions[i + 1] = y; positions[i + 2] = z;
+            normals[i] = (float)nx; normals[i + 1] = (float)ny; normals[i + 2] = (float)nz;
+            return vertexCount++;
+        }
+
+        /**
+         * Adds a triangle made of three previously added vertices.
+         */
+        public void addTriangle(int a, int b, int c, int color) {
+            if (3 * triangleCount == indices.length) {
+                indices = Arrays.copyOf(indices, indices.length * 2);
+                colors = Arrays.copyOf(colors, colors.length * 2);
+            }
+            int i = 3 * triangleCount;
+            indices[i] = a; indices[i + 1] = b; indices[i + 2] = c;
+            colors[triangleCount++] = color;
+        }
+
+        public int getVertexCount() { return vertexCount; }
+        public int getTriangleCount() { return triangleCount; }
+
+        /**
+         * Creates the mesh from the collected data (the arrays are trimmed to size).
+         */
+        public IndexedMesh build() {
+            return new IndexedMesh(
+                    Arrays.copyOf(positions, 3 * vertexCount),
+                    Arrays.copyOf(normals, 3 * vertexCount),
+                    Arrays.copyOf(indices, 3 * triangleCount),
+                    Arrays.copyOf(colors, triangleCount));
+        }
+    }
+}
@@ -64,6 +64,16 @@ public class Matrix4x4 {
      */
     public Matrix4x4 multiply(Matrix4x4 other) {
         Matrix4x4 out = new Matrix4x4();
+        multiply(other, out);
+        return out;
+    }
+
+    /**
+     * Zero-Allocation Matrix Multiplication. Result = This * Other, stored in 'out'.
+     * @param other The matrix to multiply by.
+     * @param out Output Matrix (Modified in-place). Must not be 'this' or 'other'.
+     */
+    public void multiply(Matrix4x4 other, Matrix4x4 out) {
         for (int r = 0; r < 4; r++) {
             for (int c = 0; c < 4; c++) {
                 out.m[r][c] = m[r][0] * other.m[0][c] +
@@ -72,18 +82,49 @@ public class Matrix4x4 {
                               m[r][3] * other.m[3][c];
             }
         }
-        return out;
+    }
+
+    /**
+     * Copies all 16 values of another matrix into this one.
+     * @return This matrix.
+     */
+    public Matrix4x4 set(Matrix4x4 other) {
+        for (int r = 0; r < 4; r++) {
+            System.arraycopy(other.m[r], 0, m[r], 0, 4);
+        }
+        return this;
+    }
+
+    /**
+     * Resets this matrix to the Identity Matrix (see {@link #makeIdentity()}).
+     * @return This matrix.
+     */
+    public Matrix4x4 setIdentity() {
+        for (int r = 0; r < 4; r++) {
+            for (int c = 0; c < 4; c++) {
+                m[r][c] = (r == c) ? 1.0 : 0.0;
+            }
+        }
+        return this;
     }
     
     /**
      * Creates a Translation Matrix.
      */
     public static Matrix4x4 translation(double x, double y, double z) {
-        Matrix4x4 matrix = makeIdentity();
-        matrix.m[3][0] = x;
-        matrix.m[3][1] = y;
-        matrix.m[3][2] = z;
-        return matrix;
+        return new Matrix4x4().setTranslation(x, y, z);
+    }
+
+    /**
+     * Turns this matrix into a Translation Matrix (Zero-Allocation version of {@link #translation}).
+     * @return This matrix.
+     */
+    public Matrix4x4 setTranslation(double x, double y, double z) {
+        setIdentity();
+        m[3][0] = x;
+        m[3][1] = y;
+        m[3][2] = z;
+        return this;
     }
 
     /**
@@ -97,12 +138,7 @@ public class Matrix4x4 {
      * </p>
      */
     public static Matrix4x4 makeIdentity() {
-        Matrix4x4 matrix = new Matrix4x4();
-        matrix.m[0][0] = 1.0;
-        matrix.m[1][1] = 1.0;
-        matrix.m[2][2] = 1.0;
-        matrix.m[3][3] = 1.0;
-        return matrix;
+        return new Matrix4x4().setIdentity();
     }
 
     /**
@@ -110,14 +146,21 @@ public class Matrix4x4 {
      * @param angleRad The angle in radians.
      */
     public static Matrix4x4 rotationX(double angleRad) {
-        Matrix4x4 matrix = new Matrix4x4();
-        matrix.m[0][0] = 1.0;
-        matrix.m[1][1] = Math.cos(angleRad);
-        matrix.m[1][2] = Math.sin(angleRad);
-        matrix.m[2][1] = -Math.sin(angleRad);
-        matrix.m[2][2] = Math.cos(angleRad);
-        matrix.m[3][3] = 1.0;
-        return matrix;
+        return new Matrix4x4().setRotationX(angleRad);
+    }
+
+    /**
+     * Turns this matrix into a Rotation Matrix for the X-axis (Zero-Allocation version of {@link #rotationX}).
+     * @param angleRad The angle in radians.
+     * @return This matrix.
+     */
+    public Matrix4x4 setRotationX(double angleRad) {
+        setIdentity();
+        m[1][1] = Math.cos(angleRad);
+        m[1][2] = Math.sin(angleRad);
+        m[2][1] = -Math.sin(angleRad);
+        m[2][2] = Math.cos(angleRad);
+        return this;
     }
 
     /**
@@ -125,14 +168,21 @@ public class Matrix4x4 {
      * @param angleRad The angle in radians.
      */
     public static Matrix4x4 rotationY(double angleRad) {
-        Matrix4x4 matrix = new Matrix4x4();
-        matrix.m[0][0] = Math.cos(angleRad);
-        matrix.m[0][2] = Math.sin(angleRad);
-        matrix.m[1][1] = 1.0;
-        matrix.m[2][0] = -Math.sin(angleRad);
-        matrix.m[2][2] = Math.cos(angleRad);
-        matrix.m[3][3] = 1.0;
-        return matrix;
+        return new Matrix4x4().setRotationY(angleRad);
+    }
+
+    /**
+     * Turns this matrix into a Rotation Matrix for the Y-axis (Zero-Allocation version of {@link #rotationY}).
+     * @param angleRad The angle in radians.
+     * @return This matrix.
+     */
+    public Matrix4x4 setRotationY(double angleRad) {
+        setIdentity();
+        m[0][0] = Math.cos(angleRad);
+        m[0][2] = Math.sin(angleRad);
+        m[2][0] = -Math.sin(angleRad);
+        m[2][2] = Math.cos(angleRad);
+        return this;
     }
 
     /**
@@ -3,7 +3,7 @@ package game;
 import engine.core.Camera;
 import engine.core.Engine;
 import engine.io.ObjLoader;
-import engine.math.Mesh;
+import engine.math.IndexedMesh;
 
 import java.awt.event.KeyEvent;
 import java.util.ArrayList;
@@ -19,7 +19,7 @@ import java.util.List;
  */
 public class DemoGame extends Engine {
 
-    private List<Mesh> meshes;
+    private List<IndexedMesh> meshes;
     private Camera camera;
     private Terrain terrain;
 
@@ -139,10 +139,10 @@ public class DemoGame extends Engine {
      */
     @Override
     public void render() {
-        renderer.beginFrame();
+        renderer.beginFrame(camera);
 
-        for (Mesh mesh : meshes) {
-            renderer.renderMesh(mesh, camera);
+        for (IndexedMesh mesh : meshes) {
+            renderer.renderMesh(mesh);
         }
         
         // FLUSH: Draw all buffered triangles (The Separation of Concerns)
@@ -161,8 +161,13 @@ public class DemoGame extends Engine {
 
         // Count total triangles in the scene (Static count)
         int totalTris = 0;
-        for (Mesh m : meshes) totalTris += m.triangles.size();
+        for (IndexedMesh m : meshes) totalTris += m.triangleCount;
 
         screen.drawText("Triangles: " + totalTris, 10, 40, 0xFFFFFF);
+
+        // Which raster path the projected triangles of this frame took
+        screen.drawText("Raster: " + renderer.getRegularTriangleCount() + " full, "
+                + renderer.getSmallTriangleCount() + " small, "
+                + renderer.getCulledTriangleCount() + " culled", 10, 60, 0xFFFFFF);
     }
 }
@@ -1,8 +1,7 @@
 package game;
 
-import engine.math.Mesh;
+import engine.math.IndexedMesh;
 import engine.math.PerlinNoise;
-import engine.math.Triangle;
 import engine.math.Vector3D;
 
 import java.util.ArrayList;
@@ -15,7 +14,7 @@ import java.util.List;
 public class Terrain {
     // We now split the world into multiple smaller meshes ("Chunks").
     // This allows the renderer to skip drawing chunks that are behind the player.
-    public List<Mesh> chunks = new ArrayList<>();
+    public List<IndexedMesh> chunks = new ArrayList<>();
     
     private final PerlinNoise noise;
     private final double scale;
@@ -98,63 +97,69 @@ public class Terrain {
         for (int startX = 0; startX < width; startX += CHUNK_SIZE) {
             for (int startZ = 0; startZ < depth; startZ += CHUNK_SIZE) {
                 
-                Mesh chunk = new Mesh();
-                
                 int endX = Math.min(startX + CHUNK_SIZE, width);
                 int endZ = Math.min(startZ + CHUNK_SIZE, depth);
+                int cellsX = endX - startX;
+                int cellsZ = endZ - startZ;
+                
+                // --- SHARED VERTEX GRID ---
+                // Every grid point is stored once (with its height and normal) and shared by up to 6 triangles.
+                // Vertex (x, z) of this chunk has index (x - startX) * (cellsZ + 1) + (z - startZ).
+                int rowLength = cellsZ + 1;
+                int vertexCount = (cellsX + 1) * rowLength;
+                double[] positions = new double[3 * vertexCount];
+                float[] normals = new float[3 * vertexCount];
+                
+                for (int x = startX; x <= endX; x++) {
+                    for (int z = startZ; z <= endZ; z++) {
+                        int v = 3 * ((x - startX) * rowLength + (z - startZ));
+                        
+                        // Coordinates (using Fractal Noise for the height)
+                        positions[v] = (x - width/2.0) * scale;
+                        positions[v + 1] = sampleHeight(x, z);
+                        positions[v + 2] = (z - depth/2.0) * scale;
+                        
+                        // Normal
+                        Vector3D n = getNormal(x, z);
+                        normals[v] = (float)n.x;
+                        normals[v + 1] = (float)n.y;
+                        normals[v + 2] = (float)n.z;
+                    }
+                }
+                
+                // --- TRIANGLES ---
+                int[] indices = new int[6 * cellsX * cellsZ];
+                int[] colors = new int[2 * cellsX * cellsZ];
+                int tri = 0;
                 
                 for (int x = startX; x < endX; x++) {
                     for (int z = startZ; z < endZ; z++) {
-                        // Coordinates
-                        double x0 = (x - width/2.0) * scale;
-                        double z0 = (z - depth/2.0) * scale;
-                        double x1 = (x + 1 - width/2.0) * scale;
-                        double z1 = (z + 1 - depth/2.0) * scale;
-                        
-                        // Heights (using Fractal Noise)
-                        double y00 = sampleHeight(x, z);
-                        double y01 = sampleHeight(x, z + 1);
-                        double y10 = sampleHeight(x + 1, z);
-                        double y11 = sampleHeight(x + 1, z + 1);
+                        // Corner indices
+                        int i00 = (x - startX) * rowLength + (z - startZ);
+                        int i01 = i00 + 1;
+                        int i10 = i00 + rowLength;
+                        int i11 = i10 + 1;
                         
-                        // Normals
-                        Vector3D n00 = getNormal(x, z);
-                        Vector3D n01 = getNormal(x, z + 1);
-                        Vector3D n10 = getNormal(x + 1, z);
-                        Vector3D n11 = getNormal(x + 1, z + 1);
-
                         // Improved Dynamic Coloring
+                        double y00 = positions[3 * i00 + 1];
                         int color;
                         if (y00 < -2.0) color = 0x2E8B57; // Deep Sea
                         else if (y00 < 0.0) color = 0x3CB371; // Shallow Water
                         else if (y00 < 1.0) color = 0xC2B280; // Sand/Beach
                         else if (y00 < 8.0) color = 0x8B4513; // Dirt/Hills
                         else color = 0xFFFFFF; // Snow Peaks
-
+                        
                         // Triangle 1
-                        Triangle t1 = new Triangle(
-                            new Vector3D(x0, y00, z0),
-                            new Vector3D(x1, y11, z1),
-                            new Vector3D(x0, y01, z1),
-                            color
-                        );
-                        t1.n[0] = n00; t1.n[1] = n11; t1.n[2] = n01;
-                        chunk.triangles.add(t1);
+                        indices[3 * tri] = i00; indices[3 * tri + 1] = i11; indices[3 * tri + 2] = i01;
+                        colors[tri++] = color;
                         
                         // Triangle 2
-                        Triangle t2 = new Triangle(
-                            new Vector3D(x0, y00, z0),
-                            new Vector3D(x1, y10, z0),
-                            new Vector3D(x1, y11, z1),
-                            color
-                        );
-                        t2.n[0] = n00; t2.n[1] = n10; t2.n[2] = n11;
-                        chunk.triangles.add(t2);
+                        indices[3 * tri] = i00; indices[3 * tri + 1] = i10; indices[3 * tri + 2] = i11;
+                        colors[tri++] = color;
                     }
                 }
                 
-                chunk.recalculateBounds();
-                chunks.add(chunk);
+                chunks.add(new IndexedMesh(positions, normals, indices, colors));
             }
         }
     }
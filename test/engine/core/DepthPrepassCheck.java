@@ -0,0 +1,104 @@
+package engine.core;
+
+import engine.graphics.Screen;
+import engine.math.Mesh;
+import engine.math.Triangle;
+import engine.math.Vector3D;
+
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Regression check: the Depth Pre-Pass must draw the same image with and without Hierarchical Z.
+ * <p>
+ * Pass 1 runs with Hi-Z, pass 2 (EQUAL) without it, and EQUAL only shades a pixel when both passes
+ * computed bit-identical depth for it. If Hi-Z changed how a triangle's spans are laid out in pass 1,
+ * pixels would fail the EQUAL test and keep the sky color.
+ * </p>
+ * The scene is a slanted far wall behind many thin near strips whose edges fall inside the 8x8 blocks,
+ * so Hi-Z rejects some blocks of the wall and not others. Every depth format and raster mode is checked.
+ * <p>
+ * Run from the project root (exits with status 1 on failure):
+ * </p>
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d out $(find src test -name "*.java")
+ * java --add-modules jdk.incubator.vector -cp out engine.core.DepthPrepassCheck
+ * </pre>
+ */
+public class DepthPrepassCheck {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 400;
+
+    public static void main(String[] args) {
+        Mesh scene = buildScene();
+        Camera camera = new Camera();
+
+        int failures = 0;
+        for (Screen.DepthFormat depthFormat : Screen.DepthFormat.values()) {
+            for (Renderer.RasterMode rasterMode : Renderer.RasterMode.values()) {
+                int[] withHiZ = render(scene, camera, depthFormat, rasterMode, true);
+                int[] withoutHiZ = render(scene, camera, depthFormat, rasterMode, false);
+
+                int diff = 0;
+                for (int i = 0; i < withHiZ.length; i++) {
+                    if (withHiZ[i] != withoutHiZ[i]) diff++;
+                }
+                System.out.printf("%-8s %-10s pixels differing with Hi-Z on/off: %d%n", depthFormat, rasterMode, diff);
+                if (diff != 0) failures++;
+            }
+        }
+
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " configuration(s) differ");
+            System.exit(1);
+        }
+        System.out.println("OK");
+        System.exit(0); // The renderers' worker threads would keep the JVM alive
+    }
+
+    private static int[] render(Mesh scene, Camera camera,
+                                Screen.DepthFormat depthFormat, Renderer.RasterMode rasterMode, boolean hiZ) {
+        Screen screen = new Screen(WIDTH, HEIGHT);
+        screen.setDepthFormat(depthFormat);
+        Renderer renderer = new Renderer(screen);
+        renderer.setRenderPath(Renderer.RenderPath.DEPTH_PREPASS);
+        renderer.setRasterMode(rasterMode);
+        renderer.setHierarchicalZ(hiZ);
+
+        // Two frames, so Hi-Z and the tile buffers also start from a previous frame's state
+        for (int frame = 0; frame < 2; frame++) {
+            renderer.beginFrame(camera);
+            renderer.renderMesh(scene);
+            renderer.draw();
+        }
+        int[] pixels = ((DataBufferInt)screen.getImage().getRaster().getDataBuffer()).getData();
+        return Arrays.copyOf(pixels, WIDTH * HEIGHT);
+    }
+
+    /**
+     * A far wall, slanted so its depth changes along X, and 200 narrow strips in front of it.
+     * The quads are double-sided so the winding does not matter.
+     */
+    private static Mesh buildScene() {
+        Mesh mesh = new Mesh();
+        addQuad(mesh, -200, 200, -200, 200, 50, 0.037, 0x40C040);
+        for (int k = 0; k < 200; k++) {
+            addQuad(mesh, -20 + k * 0.105, -20 + (k + 1) * 0.105, -20, 20, 10, 0.0, 0xC04040);
+        }
+        mesh.recalculateBounds();
+        return mesh;
+    }
+
+    private static void addQuad(Mesh mesh, double x0, double x1, double y0, double y1,
+                                double z, double zSlope, int color) {
+        Vector3D a = new Vector3D(x0, y0, z + zSlope * x0);
+        Vector3D b = new Vector3D(x1, y0, z + zSlope * x1);
+        Vector3D c = new Vector3D(x1, y1, z + zSlope * x1);
+        Vector3D d = new Vector3D(x0, y1, z + zSlope * x0);
+        mesh.triangles.add(new Triangle(a, b, c, color));
+        mesh.triangles.add(new Triangle(a, c, d, color));
+        mesh.triangles.add(new Triangle(a, c, b, color));
+        mesh.triangles.add(new Triangle(a, d, c, color));
+    }
+}
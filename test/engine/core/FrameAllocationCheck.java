@@ -0,0 +1,155 @@
+package engine.core;
+
+import engine.graphics.Screen;
+import engine.math.IndexedMesh;
+import engine.math.Mesh;
+import engine.math.Triangle;
+import engine.math.Vector3D;
+import game.Terrain;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regression check: once warmed up, a frame allocates nothing, on the main thread or on the workers.
+ * <p>
+ * Renders the terrain (an {@link IndexedMesh} per chunk) with every render path and raster mode, from high above
+ * and from near the ground, and reads the per-thread allocation counters of the JVM
+ * (com.sun.management.ThreadMXBean) around a batch of frames.
+ * A {@link Mesh} of large quads around both camera positions is drawn too: its triangles cross the near plane
+ * and the Guard Band, so clipping and per-vertex lighting of the other mesh type are measured as well.
+ * </p>
+ * <p>
+ * The first frames are allowed to allocate: the JIT compiles the Pixel Loop, the pooled triangles and queues
+ * grow to the size of the scene, and which worker picks up which mesh changes from frame to frame.
+ * So every configuration is warmed up first; then each is measured once, and its batch must allocate nothing.
+ * </p>
+ * <p>
+ * The Pixel Loop is the one the game uses: SIMD when run with the Vector API module (as below),
+ * scalar otherwise. The choice is printed at startup.
+ * </p>
+ * Run from the project root (exits with status 1 on failure):
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -d out $(find src test -name "*.java")
+ * java --add-modules jdk.incubator.vector -cp out engine.core.FrameAllocationCheck
+ * </pre>
+ */
+public class FrameAllocationCheck {
+
+    private static final int WARMUP_FRAMES = 300;  // Per configuration, before any is measured
+    private static final int SETTLE_FRAMES = 20;   // Per configuration, right before its batch
+    private static final int BATCH_FRAMES = 50;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        WorkerPool workers = new WorkerPool(4);
+        Screen screen = new Screen(960, 600);
+        Renderer renderer = new Renderer(screen, workers);
+        List<IndexedMesh> meshes = new Terrain(200, 200, 2.0, 42L).chunks;
+        long[] threadIds = renderThreadIds();
+
+        Camera camera = new Camera();
+        double[][] views = {
+                { 0, -15, -5, 0.2 }, // Above the terrain
+                { 0, 5, 0, 0.0 }     // Near the ground: triangles get clipped
+        };
+        Mesh clipScene = buildClipScene(views);
+
+        // Round 0 warms every configuration up, round 1 measures them: a code path that only gets hot
+        // in a later configuration would otherwise be compiled (or recompiled) during a measured batch.
+        int failures = 0;
+        for (int round = 0; round < 2; round++) {
+            boolean measure = round == 1;
+            for (Renderer.RenderPath renderPath : Renderer.RenderPath.values()) {
+                for (Renderer.RasterMode rasterMode : Renderer.RasterMode.values()) {
+                    renderer.setRenderPath(renderPath);
+                    renderer.setRasterMode(rasterMode);
+                    for (double[] view : views) {
+                        camera.position.set(view[0], view[1], view[2]);
+                        camera.pitch = view[3];
+
+                        renderFrames(renderer, camera, meshes, clipScene, measure ? SETTLE_FRAMES : WARMUP_FRAMES);
+                        if (!measure) continue;
+
+                        long before = allocatedBytes(threadBean, threadIds);
+                        renderFrames(renderer, camera, meshes, clipScene, BATCH_FRAMES);
+                        long bytes = allocatedBytes(threadBean, threadIds) - before;
+                        System.out.printf("%-17s %-10s camera y=%5.1f  bytes allocated in %d frames: %d%n",
+                                renderPath, rasterMode, view[1], BATCH_FRAMES, bytes);
+                        if (bytes != 0) failures++;
+                    }
+                }
+            }
+        }
+        renderer.shutdown();
+        workers.shutdown();
+
+        if (failures > 0) {
+            System.out.println("FAILED: " + failures + " configuration(s) allocate per frame");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static void renderFrames(Renderer renderer, Camera camera, List<IndexedMesh> meshes, Mesh clipScene,
+                                     int frames) {
+        for (int f = 0; f < frames; f++) {
+            renderer.beginFrame(camera);
+            for (int i = 0; i < meshes.size(); i++) renderer.renderMesh(meshes.get(i));
+            renderer.renderMesh(clipScene);
+            renderer.draw();
+        }
+    }
+
+    /**
+     * For each view, a floor just below the eye and a slanted wall beside it, both reaching from behind the camera
+     * to far ahead and far to the sides. Their triangles cross the near plane, and where they do, they are
+     * hundreds of units to the side: far outside the Guard Band. The quads are double-sided.
+     */
+    private static Mesh buildClipScene(double[][] views) {
+        Mesh mesh = new Mesh();
+        for (double[] view : views) {
+            double x = view[0], y = view[1], z = view[2];
+            addQuad(mesh, new Vector3D(x - 400, y + 1, z - 50), new Vector3D(x + 400, y + 1, z - 50),
+                    new Vector3D(x + 400, y + 1, z + 400), new Vector3D(x - 400, y + 1, z + 400), 0x808080);
+            addQuad(mesh, new Vector3D(x + 3, y - 200, z - 50), new Vector3D(x + 300, y - 200, z + 100),
+                    new Vector3D(x + 300, y + 200, z + 100), new Vector3D(x + 3, y + 200, z - 50), 0xA06040);
+        }
+        mesh.recalculateBounds();
+        return mesh;
+    }
+
+    private static void addQuad(Mesh mesh, Vector3D a, Vector3D b, Vector3D c, Vector3D d, int color) {
+        mesh.triangles.add(new Triangle(a, b, c, color));
+        mesh.triangles.add(new Triangle(a, c, d, color));
+        mesh.triangles.add(new Triangle(a, c, b, color));
+        mesh.triangles.add(new Triangle(a, d, c, color));
+    }
+
+    /**
+     * IDs of the calling thread and the render workers (looked up once, this allocates).
+     */
+    private static long[] renderThreadIds() {
+        List<Thread> threads = new ArrayList<>();
+        threads.add(Thread.currentThread());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("Render-Worker-")) threads.add(thread);
+        }
+        long[] ids = new long[threads.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = threads.get(i).getId();
+        return ids;
+    }
+
+    /**
+     * Sum of the bytes allocated so far by the given threads. Reading a single counter allocates nothing.
+     */
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threadBean, long[] threadIds) {
+        long sum = 0;
+        for (long id : threadIds) sum += threadBean.getThreadAllocatedBytes(id);
+        return sum;
+    }
+}